@@ -0,0 +1,55 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+// the key=value arguments every standalone benchmark takes, plus where it writes its JSON result
+public class BenchmarkOptions {
+    private final Map<String, String> values;
+
+    private BenchmarkOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    // prints the usage line and returns null if an argument is not key=value
+    public static BenchmarkOptions parse(String[] args, String usage) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.err.println("Usage: " + usage);
+                return null;
+            }
+            values.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return new BenchmarkOptions(values);
+    }
+
+    public String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    // prints the result and writes it to output=, or to the benchmark's default file
+    public void writeResult(String json, String defaultFile) throws IOException {
+        System.out.println(json);
+        Files.writeString(Paths.get(get("output", defaultFile)), json);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.example.HTTPHandler;
+import org.example.HTTPRequest;
+import org.example.HTTPResponse;
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+
+final class BenchmarkRequests {
+    static final String rootDir = System.getProperty("bench.root", "../lab3/public");
+
+    private static final OutputStream discard = OutputStream.nullOutputStream();
+    private static final WritableByteChannel discardChannel = Channels.newChannel(discard);
+
+    private BenchmarkRequests() {
+    }
+
+    static byte[] get(String path, String... headers) {
+        StringBuilder request = new StringBuilder("GET ").append(path).append(" HTTP/1.1\r\n")
+                .append("Host: localhost:8080\r\n");
+        for (String header : headers) {
+            request.append(header).append("\r\n");
+        }
+        return request.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static HttpRequestParser newParser() {
+        return new HttpRequestParser(8192, 100, 1024 * 1024);
+    }
+
+    static HTTPResponse handle(HttpRequestParser parser, byte[] raw) throws IOException, HttpParseException {
+        return handle(parser, raw, rootDir);
+    }
+
+    static HTTPResponse handle(HttpRequestParser parser, byte[] raw, String root)
+            throws IOException, HttpParseException {
+        parser.reset();
+        if (!parser.parse(ByteBuffer.wrap(raw))) {
+            throw new IllegalStateException("Incomplete benchmark request");
+        }
+        return HTTPHandler.process(new HTTPRequest(parser), root);
+    }
+
+    static long send(HTTPResponse response) throws IOException {
+        response.writeTo(discard, discardChannel);
+        return response.getContentLength();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.proxy.RequestCoalescer;
+
+public class CoalescingBenchmark {
+    private static final String body = "coalesced response body";
+
+    private final AtomicInteger originFetches = new AtomicInteger();
+    private final long originDelayMillis;
+
+    public CoalescingBenchmark(long originDelayMillis) {
+        this.originDelayMillis = originDelayMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args, "CoalescingBenchmark [clients=50] [delayMs=500]");
+        if (options == null) {
+            return;
+        }
+
+        int clients = options.getInt("clients", 50);
+        CoalescingBenchmark benchmark = new CoalescingBenchmark(options.getLong("delayMs", 500));
+        int fetches = benchmark.run(clients);
+        System.out.println("clients=" + clients + " originFetches=" + fetches + " " + RequestCoalescer.getStats());
+    }
+
+    public int run(int clients) throws Exception {
+        try (ServerSocket origin = ProxyHarness.startOrigin(this::serveOrigin);
+             ServerSocket proxy = ProxyHarness.startProxy();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String request = "GET http://localhost:" + origin.getLocalPort() + "/shared HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return fetch(proxy.getLocalPort(), request);
+                }));
+            }
+            start.countDown();
+
+            for (Future<String> response : responses) {
+                if (!response.get().endsWith(body)) {
+                    throw new IllegalStateException("Unexpected response: " + response.get());
+                }
+            }
+            return originFetches.get();
+        }
+    }
+
+    private static String fetch(int port, String request) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            InputStream input = socket.getInputStream();
+            return new String(input.readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private void serveOrigin(Socket socket) throws IOException {
+        InputStream input = socket.getInputStream();
+        OutputStream output = socket.getOutputStream();
+        while (ProxyHarness.skipRequestHead(input)) {
+            originFetches.incrementAndGet();
+            try {
+                Thread.sleep(originDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            output.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nCache-Control: max-age=60\r\n"
+                    + "Content-Length: " + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.example.ContentEncoder;
+import org.example.HTTPResponse;
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentEncodingBenchmark {
+    @Param({"/index_files/jquery.js.download", "/index_files/iana_website.css", "/"})
+    public String path;
+
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    private HttpRequestParser parser;
+    private byte[] request;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+        public long bytesOnWire;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            bytesOnWire = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        parser = BenchmarkRequests.newParser();
+        request = BenchmarkRequests.get(path, "Accept-Encoding: " + encoding);
+    }
+
+    @Benchmark
+    public HTTPResponse cached(Wire wire) throws IOException, HttpParseException {
+        HTTPResponse response = BenchmarkRequests.handle(parser, request);
+        wire.bytesOnWire += BenchmarkRequests.send(response);
+        return response;
+    }
+
+    @Benchmark
+    public HTTPResponse uncached(Wire wire) throws IOException, HttpParseException {
+        ContentEncoder.clear();
+        HTTPResponse response = BenchmarkRequests.handle(parser, request);
+        wire.bytesOnWire += BenchmarkRequests.send(response);
+        return response;
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.example.CrawlOutputWriter;
+
+public class CrawlOutputBenchmark {
+    private final int pages;
+    private final int linksPerPage;
+    private final int workers;
+
+    public CrawlOutputBenchmark(int pages, int linksPerPage, int workers) {
+        this.pages = pages;
+        this.linksPerPage = linksPerPage;
+        this.workers = workers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "CrawlOutputBenchmark [pages=100000] [links=20] [workers=16] [dir=crawl-output-test] "
+                        + "[output=crawl-output-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        CrawlOutputBenchmark benchmark = new CrawlOutputBenchmark(
+                options.getInt("pages", 100000),
+                options.getInt("links", 20),
+                options.getInt("workers", 16));
+        String json = benchmark.run(Paths.get(options.get("dir", "crawl-output-test")));
+        options.writeResult(json, "crawl-output-result.json");
+    }
+
+    public String run(Path directory) throws Exception {
+        String segments = measure("segments", directory.resolve("segments"), false);
+        String files = measure("perPageFiles", directory.resolve("files"), true);
+        delete(directory);
+        return String.format(Locale.ROOT, "{\"pages\":%d,\"linksPerPage\":%d,\"workers\":%d,%s,%s}",
+                pages, linksPerPage, workers, segments, files);
+    }
+
+    private String measure(String name, Path directory, boolean perPageFiles) throws Exception {
+        delete(directory);
+        PrintStream console = System.out;
+        long start = System.nanoTime();
+        // the per-page mode reports every file it writes; the console is not what is being measured
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (CrawlOutputWriter writer = new CrawlOutputWriter(directory, perPageFiles, 64L * 1024 * 1024, 16 * 1024);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?>[] tasks = new Future<?>[workers];
+            for (int worker = 0; worker < workers; worker++) {
+                int first = worker;
+                tasks[worker] = executor.submit(() -> {
+                    for (int page = first; page < pages; page += workers) {
+                        writer.handle(url(page), page == 0 ? 0 : 1, links(page));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            System.setOut(console);
+        }
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+        long entries;
+        long bytes;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            entries = walk.count();
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            bytes = walk.filter(Files::isRegularFile).mapToLong(CrawlOutputBenchmark::size).sum();
+        }
+        String sample = perPageFiles ? null : CrawlOutputWriter.findPage(directory, url(pages / 2));
+        if (!perPageFiles && sample == null) {
+            throw new IllegalStateException("Indexed lookup could not find " + url(pages / 2));
+        }
+
+        start = System.nanoTime();
+        delete(directory);
+        double deleteSeconds = (System.nanoTime() - start) / 1e9;
+        return String.format(Locale.ROOT, "\"%s\":{\"seconds\":%.2f,\"pagesPerSec\":%.0f,\"inodes\":%d,\"bytes\":%d,"
+                        + "\"deleteSeconds\":%.2f}",
+                name, writeSeconds, pages / writeSeconds, entries, bytes, deleteSeconds);
+    }
+
+    private static String url(int page) {
+        return "https://example.com/articles/" + page + "/index.html";
+    }
+
+    private Set<String> links(int page) {
+        Set<String> links = new LinkedHashSet<>();
+        for (int i = 1; i <= linksPerPage; i++) {
+            links.add(url((page * 31 + i * 7919) % pages));
+        }
+        return links;
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.example.Crawler;
+
+public class CrawlerThroughputBenchmark {
+    private final int pages;
+    private final int fanout;
+    private final long originDelayMillis;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public CrawlerThroughputBenchmark(int pages, int fanout, long originDelayMillis) {
+        this.pages = pages;
+        this.fanout = fanout;
+        this.originDelayMillis = originDelayMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "CrawlerThroughputBenchmark [pages=500] [fanout=10] [delayMs=20] [concurrency=16] "
+                        + "[output=crawler-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        CrawlerThroughputBenchmark benchmark = new CrawlerThroughputBenchmark(
+                options.getInt("pages", 500),
+                options.getInt("fanout", 10),
+                options.getLong("delayMs", 20));
+        String json = benchmark.run(options.getInt("concurrency", 16));
+        options.writeResult(json, "crawler-result.json");
+    }
+
+    public String run(int concurrency) throws Exception {
+        try (ServerSocket origin = ProxyHarness.startOrigin(this::serveSite)) {
+            String seed = "http://localhost:" + origin.getLocalPort() + "/page/0";
+            // one worker and one connection per host reproduces the old one-page-at-a-time /run
+            String sequential = measure("sequential", seed, 1, Crawler.createHttpClient(1, 1));
+            // a client that never reuses connections pays a handshake per page, like the old client-per-fetch code
+            String unpooled = measure("unpooled", seed, concurrency, HttpClients.custom()
+                    .setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE)
+                    .setMaxConnTotal(concurrency).setMaxConnPerRoute(concurrency).build());
+            String pooled = measure("pooled", seed, concurrency, Crawler.createHttpClient(concurrency, concurrency));
+            return String.format(Locale.ROOT, "{\"pages\":%d,\"originDelayMs\":%d,\"concurrency\":%d,%s,%s,%s}",
+                    pages, originDelayMillis, concurrency, sequential, unpooled, pooled);
+        }
+    }
+
+    private String measure(String name, String seed, int concurrency, CloseableHttpClient httpClient) throws Exception {
+        try (httpClient) {
+            int connectionsBefore = connections.get();
+            Crawler.Result result = new Crawler(Integer.MAX_VALUE, concurrency, concurrency, 0, httpClient,
+                    CrawlerThroughputBenchmark::discard).crawl(seed);
+            if (result.pages() != pages) {
+                throw new IllegalStateException("Expected " + pages + " pages, " + name + " crawl fetched " + result.pages());
+            }
+            return String.format(Locale.ROOT, "\"%s\":{\"millis\":%.1f,\"pagesPerSec\":%.1f,\"connections\":%d}",
+                    name, result.elapsedNanos() / 1e6, result.pagesPerSecond(), connections.get() - connectionsBefore);
+        }
+    }
+
+    private static void discard(String url, int depth, Set<String> links) {
+    }
+
+    private void serveSite(Socket socket) throws IOException {
+        connections.incrementAndGet();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        OutputStream output = socket.getOutputStream();
+        String requestLine;
+        while ((requestLine = reader.readLine()) != null) {
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // skip headers
+            }
+            String path = requestLine.split(" ")[1];
+            int page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+
+            StringBuilder body = new StringBuilder("<html><body><a href=\"/page/0\">home</a>");
+            for (int child = page * fanout + 1; child <= page * fanout + fanout && child < pages; child++) {
+                body.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a>");
+            }
+            body.append("</body></html>");
+            byte[] bytes = body.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+            try {
+                Thread.sleep(originDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // head and body in one write, so Nagle's algorithm cannot hold the body back behind a delayed ACK
+            byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nContent-Length: " + bytes.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            byte[] response = new byte[head.length + bytes.length];
+            System.arraycopy(head, 0, response, 0, head.length);
+            System.arraycopy(bytes, 0, response, head.length, bytes.length);
+            output.write(response);
+            output.flush();
+        }
+    }
+}
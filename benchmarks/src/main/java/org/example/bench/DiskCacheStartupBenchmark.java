@@ -0,0 +1,114 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+import org.example.proxy.DiskCache;
+
+public class DiskCacheStartupBenchmark {
+    private static final long segmentBytes = 64L * 1024 * 1024;
+    private static final int indexSlots = 1 << 20;
+
+    private final Path directory;
+    private final long sizeBytes;
+    private final int entryBytes;
+
+    public DiskCacheStartupBenchmark(Path directory, long sizeBytes, int entryBytes) {
+        this.directory = directory;
+        this.sizeBytes = sizeBytes;
+        this.entryBytes = entryBytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "DiskCacheStartupBenchmark [dir=proxy-cache-startup] [sizeMb=10240] [entryKb=256] "
+                        + "[runs=3] [output=disk-cache-startup-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        DiskCacheStartupBenchmark benchmark = new DiskCacheStartupBenchmark(
+                Paths.get(options.get("dir", "proxy-cache-startup")),
+                options.getLong("sizeMb", 10240) * 1024 * 1024,
+                options.getInt("entryKb", 256) * 1024);
+        String json = benchmark.run(options.getInt("runs", 3));
+        options.writeResult(json, "disk-cache-startup-result.json");
+    }
+
+    public String run(int runs) throws IOException {
+        long fillMillis = fill();
+
+        long bestWarmStart = Long.MAX_VALUE;
+        int entries = 0;
+        long bytes = 0;
+        double hitMicros = 0;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            DiskCache cache = open();
+            bestWarmStart = Math.min(bestWarmStart, System.nanoTime() - start);
+            entries = cache.getEntryCount();
+            bytes = cache.getBytes();
+            hitMicros = sampleHits(cache, entries);
+            cache.close();
+        }
+
+        Files.delete(directory.resolve("index.dat"));
+        long start = System.nanoTime();
+        DiskCache rebuilt = open();
+        long rebuildNanos = System.nanoTime() - start;
+        int rebuiltEntries = rebuilt.getEntryCount();
+        rebuilt.close();
+
+        return String.format(Locale.ROOT, "{\"bytes\":%d,\"entries\":%d,\"entryBytes\":%d,\"fillMs\":%d,"
+                        + "\"warmStartMs\":%.1f,\"rebuildFromSegmentsMs\":%.1f,\"rebuiltEntries\":%d,\"diskHitMicros\":%.1f}",
+                bytes, entries, entryBytes, fillMillis, bestWarmStart / 1e6, rebuildNanos / 1e6, rebuiltEntries, hitMicros);
+    }
+
+    private DiskCache open() throws IOException {
+        return new DiskCache(directory, sizeBytes + segmentBytes, segmentBytes, indexSlots);
+    }
+
+    private long fill() throws IOException {
+        long start = System.currentTimeMillis();
+        DiskCache cache = open();
+        int target = (int) (sizeBytes / entryBytes);
+        if (cache.getEntryCount() < target) {
+            byte[] response = new byte[entryBytes];
+            new Random(42).nextBytes(response);
+            byte[] head = "HTTP/1.1 200 OK\r\nCache-Control: max-age=86400\r\n\r\n".getBytes();
+            System.arraycopy(head, 0, response, 0, head.length);
+            long expiresAt = System.currentTimeMillis() + 24L * 60 * 60 * 1000;
+            for (int i = cache.getEntryCount(); i < target; i++) {
+                if (!cache.put(url(i), response, expiresAt)) {
+                    throw new IllegalStateException("Disk cache rejected entry " + i);
+                }
+            }
+        }
+        cache.close();
+        return System.currentTimeMillis() - start;
+    }
+
+    private static double sampleHits(DiskCache cache, int entries) throws IOException {
+        int samples = Math.min(entries, 1000);
+        WritableByteChannel sink = Channels.newChannel(OutputStream.nullOutputStream());
+        Random random = new Random();
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            if (cache.transferTo(url(random.nextInt(entries)), sink) < 0) {
+                throw new IllegalStateException("Expected a disk cache hit after warm start");
+            }
+        }
+        return samples == 0 ? 0 : (System.nanoTime() - start) / 1e3 / samples;
+    }
+
+    private static String url(int index) {
+        return "http://origin.example/objects/" + index;
+    }
+}
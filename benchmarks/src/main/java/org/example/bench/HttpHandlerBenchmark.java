@@ -0,0 +1,88 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.example.HTTPHandler;
+import org.example.HTTPResponse;
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpHandlerBenchmark {
+    private static final Path[] contentTypePaths = {
+            Paths.get("index.html"),
+            Paths.get("index_files/iana_website.css"),
+            Paths.get("index_files/jquery.js.download"),
+            Paths.get("index_files/iana-logo-header.svg"),
+            Paths.get("archive.tar.gz"),
+            Paths.get("README")
+    };
+
+    @Param({"/", "/index_files/jquery.js.download", "/index_files/iana-logo-header.svg"})
+    public String path;
+
+    private HttpRequestParser parser;
+    private byte[] plainGet;
+    private byte[] conditionalGet;
+    private byte[] rangeGet;
+    private byte[] notFound;
+
+    @Setup
+    public void setup() throws IOException, HttpParseException {
+        parser = BenchmarkRequests.newParser();
+        plainGet = BenchmarkRequests.get(path);
+        String etag = BenchmarkRequests.handle(parser, plainGet).getHeader("ETag");
+        conditionalGet = BenchmarkRequests.get(path, "If-None-Match: " + etag);
+        rangeGet = BenchmarkRequests.get(path, "Range: bytes=0-1023");
+        notFound = BenchmarkRequests.get(path + ".missing");
+    }
+
+    @Benchmark
+    public long get() throws IOException, HttpParseException {
+        return BenchmarkRequests.send(BenchmarkRequests.handle(parser, plainGet));
+    }
+
+    @Benchmark
+    public int conditionalGet() throws IOException, HttpParseException {
+        HTTPResponse response = BenchmarkRequests.handle(parser, conditionalGet);
+        BenchmarkRequests.send(response);
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public long rangeGet() throws IOException, HttpParseException {
+        return BenchmarkRequests.send(BenchmarkRequests.handle(parser, rangeGet));
+    }
+
+    @Benchmark
+    public int notFound() throws IOException, HttpParseException {
+        return BenchmarkRequests.handle(parser, notFound).getStatusCode();
+    }
+
+    @Benchmark
+    public void getContentType(Blackhole blackhole) {
+        for (Path file : contentTypePaths) {
+            blackhole.consume(HTTPHandler.getContentType(file));
+        }
+    }
+}
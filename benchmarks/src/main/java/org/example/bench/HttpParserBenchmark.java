@@ -0,0 +1,127 @@
+package org.example.bench;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpParserBenchmark {
+    @Param({"minimal", "browser", "post"})
+    public String kind;
+
+    private byte[] raw;
+    private ByteBuffer input;
+    private HttpRequestParser parser;
+
+    @Setup
+    public void setup() {
+        String request = switch (kind) {
+            case "minimal" -> "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            case "browser" -> "GET /index_files/jquery.js.download HTTP/1.1\r\n"
+                    + "Host: localhost:8080\r\n"
+                    + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n"
+                    + "Accept: */*\r\n"
+                    + "Accept-Language: en-US,en;q=0.5\r\n"
+                    + "Accept-Encoding: gzip, deflate, br, zstd\r\n"
+                    + "Referer: http://localhost:8080/\r\n"
+                    + "Connection: keep-alive\r\n"
+                    + "Cookie: session=4f6c2a9e1b7d4c3a8e5f0b2d6a9c1e7f; theme=dark\r\n"
+                    + "Sec-Fetch-Dest: script\r\n"
+                    + "Sec-Fetch-Mode: no-cors\r\n"
+                    + "Sec-Fetch-Site: same-origin\r\n"
+                    + "If-None-Match: \"18f2a3b4c5d-15f2a\"\r\n"
+                    + "Priority: u=2\r\n\r\n";
+            default -> "POST /submit HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Type: application/x-www-form-urlencoded\r\n"
+                    + "Content-Length: 512\r\n\r\n" + "a".repeat(512);
+        };
+        raw = request.getBytes(StandardCharsets.ISO_8859_1);
+        input = ByteBuffer.wrap(raw);
+        parser = BenchmarkRequests.newParser();
+    }
+
+    @Benchmark
+    public int incrementalParser() throws HttpParseException {
+        input.clear();
+        parser.reset();
+        parser.parse(input);
+        return parser.headerCount() + parser.bodyLength()
+                + (parser.hasHeader("Connection") ? 1 : 0) + (parser.methodIs("GET") ? 1 : 0);
+    }
+
+    @Benchmark
+    public int lineParser() throws IOException {
+        LegacyRequest request = LegacyRequest.read(new BufferedInputStream(new ByteArrayInputStream(raw)));
+        return request.headers.size() + request.body.length
+                + (request.headers.containsKey("Connection") ? 1 : 0) + (request.method.equals("GET") ? 1 : 0);
+    }
+
+    private static class LegacyRequest {
+        private final String method;
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private byte[] body = new byte[0];
+
+        LegacyRequest(String method) {
+            this.method = method;
+        }
+
+        static LegacyRequest read(InputStream input) throws IOException {
+            String requestLine = readLine(input);
+            String[] requestParts = requestLine.split(" ");
+            LegacyRequest request = new LegacyRequest(requestParts[0]);
+            String line;
+            while ((line = readLine(input)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    request.headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+            String contentLength = request.headers.get("Content-Length");
+            if (contentLength != null) {
+                request.body = input.readNBytes(Integer.parseInt(contentLength.trim()));
+            }
+            return request;
+        }
+
+        private static String readLine(InputStream input) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = input.read()) != -1) {
+                if (b == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                line.append((char) b);
+            }
+            return line.length() > 0 ? line.toString() : null;
+        }
+    }
+}
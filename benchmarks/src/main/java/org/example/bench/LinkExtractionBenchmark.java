@@ -0,0 +1,86 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.example.LinkExtractor;
+import org.example.WebDownloader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkExtractionBenchmark {
+    private static final String corpusDir = System.getProperty("bench.corpus", "../lab3/public");
+    private static final String baseUrl = "https://example.com/";
+
+    private List<String> pages;
+    private List<byte[]> encodedPages;
+
+    @Setup
+    public void setup() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get(corpusDir))) {
+            pages = files.filter(file -> file.toString().endsWith(".html") || file.toString().endsWith(".htm"))
+                    .map(LinkExtractionBenchmark::read)
+                    .toList();
+        }
+        if (pages.isEmpty()) {
+            throw new IllegalStateException("No HTML pages found in " + corpusDir);
+        }
+        encodedPages = pages.stream().map(page -> page.getBytes(StandardCharsets.UTF_8)).toList();
+
+        long bytes = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            bytes += encodedPages.get(i).length;
+            if (!WebDownloader.extractLinks(pages.get(i), baseUrl).equals(LinkExtractor.extract(pages.get(i), baseUrl))) {
+                throw new IllegalStateException("Streaming extractor disagrees with Jsoup on corpus page " + i);
+            }
+        }
+        System.out.println("Corpus: " + pages.size() + " pages, " + bytes + " bytes");
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read corpus page " + file, e);
+        }
+    }
+
+    @Benchmark
+    public int extractLinks() {
+        int links = 0;
+        for (String page : pages) {
+            links += WebDownloader.extractLinks(page, baseUrl).size();
+        }
+        return links;
+    }
+
+    @Benchmark
+    public int streamingExtract() throws IOException {
+        int links = 0;
+        for (byte[] page : encodedPages) {
+            links += LinkExtractor.extract(new ByteArrayInputStream(page), StandardCharsets.UTF_8, baseUrl, Long.MAX_VALUE).size();
+        }
+        return links;
+    }
+}
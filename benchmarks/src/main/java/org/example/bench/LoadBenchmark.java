@@ -0,0 +1,229 @@
+package org.example.bench;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadBenchmark {
+    private final String host;
+    private final int port;
+    private final String path;
+    private final int connections;
+    private final int idleConnections;
+    private final int durationSeconds;
+    private final boolean keepAlive;
+    private final byte[] request;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    public LoadBenchmark(String host, int port, String path, int connections, int idleConnections,
+                         int durationSeconds, boolean keepAlive) {
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+        this.durationSeconds = durationSeconds;
+        this.keepAlive = keepAlive;
+        this.request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n"
+                + (keepAlive ? "" : "Connection: close\r\n") + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "LoadBenchmark [host=localhost] [port=8080] [path=/] [connections=100] "
+                        + "[idle=0] [duration=10] [keepAlive=true] [label=] [output=load-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        LoadBenchmark benchmark = new LoadBenchmark(
+                options.get("host", "localhost"),
+                options.getInt("port", 8080),
+                options.get("path", "/"),
+                options.getInt("connections", 100),
+                options.getInt("idle", 0),
+                options.getInt("duration", 10),
+                options.getBoolean("keepAlive", true));
+        String json = benchmark.run(options.get("label", ""));
+        options.writeResult(json, "load-result.json");
+    }
+
+    public String run(String label) throws InterruptedException {
+        List<Socket> idle = openIdleConnections();
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                int worker = i;
+                workers.execute(() -> {
+                    LatencyLog log = drive(deadline);
+                    latencies[worker] = log.values;
+                    counts[worker] = log.count;
+                });
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        for (Socket socket : idle) {
+            closeQuietly(socket);
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < connections; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+
+        return String.format(Locale.ROOT, "{\"label\":\"%s\",\"host\":\"%s\",\"port\":%d,\"path\":\"%s\","
+                        + "\"connections\":%d,\"idleConnections\":%d,\"idleOpened\":%d,\"keepAlive\":%b,"
+                        + "\"durationSeconds\":%.3f,\"requests\":%d,\"errors\":%d,\"bytesRead\":%d,"
+                        + "\"requestsPerSecond\":%.1f,\"connectionsPerSecond\":%.1f,"
+                        + "\"latencyMicros\":{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}}",
+                label, host, port, path, connections, idleConnections, idle.size(), keepAlive,
+                elapsedSeconds, total, errors.get(), bytesRead.get(),
+                total / elapsedSeconds, opened.get() / elapsedSeconds,
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                percentile(all, 1.0));
+    }
+
+    private List<Socket> openIdleConnections() {
+        List<Socket> sockets = new ArrayList<>(idleConnections);
+        for (int i = 0; i < idleConnections; i++) {
+            try {
+                sockets.add(new Socket(host, port));
+            } catch (IOException e) {
+                System.err.println("Opened only " + sockets.size() + " idle connections: " + e.getMessage());
+                break;
+            }
+        }
+        return sockets;
+    }
+
+    private LatencyLog drive(long deadline) {
+        LatencyLog log = new LatencyLog();
+        Socket socket = null;
+        InputStream input = null;
+        OutputStream output = null;
+
+        while (System.nanoTime() < deadline) {
+            long requestStart = System.nanoTime();
+            try {
+                if (socket == null) {
+                    socket = new Socket(host, port);
+                    socket.setTcpNoDelay(true);
+                    input = new BufferedInputStream(socket.getInputStream());
+                    output = socket.getOutputStream();
+                    opened.incrementAndGet();
+                }
+                output.write(request);
+                boolean reusable = readResponse(input);
+                log.add((System.nanoTime() - requestStart) / 1000);
+                if (!keepAlive || !reusable) {
+                    socket.close();
+                    socket = null;
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                closeQuietly(socket);
+                socket = null;
+            }
+        }
+        closeQuietly(socket);
+        return log;
+    }
+
+    private boolean readResponse(InputStream input) throws IOException {
+        String statusLine = readLine(input);
+        if (!statusLine.startsWith("HTTP/1.")) {
+            throw new IOException("Unexpected status line: " + statusLine);
+        }
+
+        long contentLength = 0;
+        boolean reusable = true;
+        String line;
+        while (!(line = readLine(input)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
+                reusable = false;
+            }
+        }
+        input.skipNBytes(contentLength);
+        bytesRead.addAndGet(contentLength);
+        return reusable;
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed by server");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing useful to do while tearing down a benchmark connection
+            }
+        }
+    }
+
+    private static class LatencyLog {
+        private long[] values = new long[1024];
+        private int count;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.example.proxy.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class LoggingBenchmark {
+    private static final String message = "Method: GET | URL: http://localhost:8080/index.html";
+
+    @Param({"drop", "block"})
+    public String overflow;
+
+    private Path directory;
+    private String legacyFile;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("proxy-log-bench");
+        legacyFile = directory.resolve("legacy.log").toString();
+        System.setProperty("proxy.logFile", directory.resolve("proxy.log").toString());
+        System.setProperty("proxy.logOverflow", overflow);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Logger.flush();
+        System.out.println("Logger: " + Logger.getStats());
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void asyncLogger() {
+        Logger.log(message);
+    }
+
+    @Benchmark
+    public void synchronizedFileWriter() {
+        legacyLog(legacyFile, message);
+    }
+
+    // the pre-existing Logger.log: one lock and one file open/close per line
+    private static synchronized void legacyLog(String logFile, String message) {
+        try (FileWriter writer = new FileWriter(logFile, true)) {
+            writer.write(LocalDateTime.now() + " - " + message + "\n");
+        } catch (IOException e) {
+            System.err.println("Logging error: " + e.getMessage());
+        }
+    }
+}
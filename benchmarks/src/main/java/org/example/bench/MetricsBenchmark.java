@@ -0,0 +1,54 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.proxy.LatencyHistogram;
+import org.example.proxy.ProxyMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dproxy.diskCacheMaxBytes=0")
+@Threads(4)
+public class MetricsBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Benchmark
+    public long baselineTimer() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        long start = System.nanoTime();
+        histogram.record(System.nanoTime() - start);
+    }
+
+    @Benchmark
+    public void requestInstrumentation() {
+        // everything ClientHandler adds around one request
+        ProxyMetrics.connectionOpened();
+        long start = System.nanoTime();
+        ProxyMetrics.requestCompleted("GET", System.nanoTime() - start);
+        ProxyMetrics.connectionClosed();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String render() {
+        return ProxyMetrics.render();
+    }
+}
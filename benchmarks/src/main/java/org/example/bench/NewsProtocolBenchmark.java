@@ -0,0 +1,168 @@
+package org.example.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+
+import org.example.common.NewsProtocol;
+
+public class NewsProtocolBenchmark {
+    private static final int warmupRequests = 2000;
+
+    private final int requests;
+    private MethodHandle newHandler;
+
+    public NewsProtocolBenchmark(int requests) {
+        this.requests = requests;
+    }
+
+    public static void main(String[] args) throws Throwable {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "NewsProtocolBenchmark [requests=100000] [output=news-protocol-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        NewsProtocolBenchmark benchmark = new NewsProtocolBenchmark(options.getInt("requests", 100000));
+        String json = benchmark.run();
+        options.writeResult(json, "news-protocol-result.json");
+    }
+
+    public String run() throws Throwable {
+        // lab1 lives in the default package, so the server side can only be reached reflectively
+        Class<?> server = Class.forName("NewsServer");
+        Class<?> handlerClass = Class.forName("NewsServer$ClientHandler");
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(handlerClass, MethodHandles.lookup());
+        newHandler = lookup.findConstructor(handlerClass, MethodType.methodType(void.class, Socket.class, String.class))
+                .asType(MethodType.methodType(Runnable.class, Socket.class, String.class));
+        MethodHandle addNews = MethodHandles.privateLookupIn(server, MethodHandles.lookup())
+                .findStatic(server, "addNews", MethodType.methodType(void.class, String.class, String.class, String.class));
+        // every request asks for a different article: a repeated String would go out as a 5-byte back-reference
+        // to the serialization handle table, which hides the real per-message cost
+        for (int news = 0; news < warmupRequests + requests; news++) {
+            addNews.invoke("bench" + news % 10, "News" + news, "Benchmark news text number " + news
+                    + " with a sentence or two of body, as a short article would have.");
+        }
+
+        try (ServerSocket listener = ProxyHarness.startOrigin(this::serve)) {
+            String serialized = measure("serialized", listener.getLocalPort(), false);
+            String binary = measure("binary", listener.getLocalPort(), true);
+            return String.format(Locale.ROOT, "{\"requests\":%d,%s,%s}", requests, serialized, binary);
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        try {
+            ((Runnable) newHandler.invokeExact(socket, "bench")).run();
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    private String measure(String name, int port, boolean binary) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            CountingInput counted = new CountingInput(new BufferedInputStream(socket.getInputStream()));
+            CountingOutput sent = new CountingOutput(new BufferedOutputStream(socket.getOutputStream()));
+            ObjectOutputStream objectOutput = null;
+            ObjectInputStream objectInput = null;
+            if (binary) {
+                NewsProtocol.clientHello(counted, sent);
+            } else {
+                objectOutput = new ObjectOutputStream(sent);
+                objectOutput.flush();
+                objectInput = new ObjectInputStream(counted);
+            }
+            long handshakeBytes = sent.count + counted.count;
+
+            for (int i = 0; i < warmupRequests; i++) {
+                roundTrip(binary, "newstext " + i, sent, counted, objectOutput, objectInput);
+            }
+            long sentBefore = sent.count;
+            long receivedBefore = counted.count;
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                roundTrip(binary, "newstext " + (warmupRequests + i), sent, counted, objectOutput, objectInput);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return String.format(Locale.ROOT, "\"%s\":{\"handshakeBytes\":%d,\"requestBytes\":%.1f,\"responseBytes\":%.1f,"
+                            + "\"roundTripsPerSec\":%.0f}",
+                    name, handshakeBytes, (double) (sent.count - sentBefore) / requests,
+                    (double) (counted.count - receivedBefore) / requests, requests / seconds);
+        }
+    }
+
+    private static void roundTrip(boolean binary, String command, OutputStream output, InputStream input,
+                                  ObjectOutputStream objectOutput, ObjectInputStream objectInput) throws Exception {
+        String response;
+        if (binary) {
+            NewsProtocol.writeRequest(output, NewsProtocol.parse(command));
+            response = NewsProtocol.readResponse(input);
+        } else {
+            objectOutput.writeObject(command);
+            objectOutput.flush();
+            response = (String) objectInput.readObject();
+        }
+        if (!response.startsWith("News")) {
+            throw new IllegalStateException("Unexpected response to " + command + ": " + response);
+        }
+    }
+
+    private static class CountingInput extends FilterInputStream {
+        private long count;
+
+        CountingInput(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private static class CountingOutput extends FilterOutputStream {
+        private long count;
+
+        CountingOutput(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+}
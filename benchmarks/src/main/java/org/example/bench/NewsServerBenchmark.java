@@ -0,0 +1,82 @@
+package org.example.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NewsServerBenchmark {
+    @Param({"10"})
+    public int themeCount;
+
+    @Param({"100"})
+    public int newsPerTheme;
+
+    private Object handler;
+    private MethodHandle handleRequest;
+    private int newsCount;
+
+    @Setup
+    public void setup() throws Throwable {
+        // lab1 lives in the default package, so it can only be reached reflectively
+        Class<?> server = Class.forName("NewsServer");
+        Class<?> handlerClass = Class.forName("NewsServer$ClientHandler");
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(handlerClass, MethodHandles.lookup());
+
+        handler = lookup.findConstructor(handlerClass, MethodType.methodType(void.class, Socket.class, String.class))
+                .invoke(null, "bench");
+        handleRequest = lookup.findVirtual(handlerClass, "handleRequest", MethodType.methodType(String.class, String.class))
+                .asType(MethodType.methodType(String.class, Object.class, String.class));
+
+        MethodHandles.privateLookupIn(server, MethodHandles.lookup())
+                .findStatic(server, "initializeDatabase", MethodType.methodType(void.class))
+                .invoke();
+        newsCount = 4;
+        for (int theme = 0; theme < themeCount; theme++) {
+            request("addtheme bench" + theme);
+            for (int news = 0; news < newsPerTheme; news++) {
+                request("addnews bench" + theme + " News" + news + " Benchmark news text number " + news);
+                newsCount++;
+            }
+        }
+    }
+
+    private String request(String command) throws Throwable {
+        return (String) handleRequest.invokeExact(handler, command);
+    }
+
+    @Benchmark
+    public String themes() throws Throwable {
+        return request("themes");
+    }
+
+    @Benchmark
+    public String newsByTheme() throws Throwable {
+        return request("newsbytheme bench" + ThreadLocalRandom.current().nextInt(themeCount));
+    }
+
+    @Benchmark
+    public String newsText() throws Throwable {
+        return request("newstext " + ThreadLocalRandom.current().nextInt(newsCount));
+    }
+}
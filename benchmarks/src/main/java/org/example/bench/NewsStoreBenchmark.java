@@ -0,0 +1,176 @@
+package org.example.bench;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.example.common.NewsStore;
+
+public class NewsStoreBenchmark {
+    private final int articles;
+    private final int themes;
+    private final int lookups;
+    private final int pageSize;
+    private final int workers;
+    private long sink;
+
+    public NewsStoreBenchmark(int articles, int themes, int lookups, int pageSize, int workers) {
+        this.articles = articles;
+        this.themes = themes;
+        this.lookups = lookups;
+        this.pageSize = pageSize;
+        this.workers = workers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "NewsStoreBenchmark [articles=1000000] [themes=10000] [lookups=1000000] [pageSize=20] "
+                        + "[workers=4] [output=news-store-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        NewsStoreBenchmark benchmark = new NewsStoreBenchmark(
+                options.getInt("articles", 1000000),
+                options.getInt("themes", 10000),
+                options.getInt("lookups", 1000000),
+                options.getInt("pageSize", 20),
+                options.getInt("workers", 4));
+        String json = benchmark.run();
+        options.writeResult(json, "news-store-result.json");
+    }
+
+    public String run() throws Exception {
+        String indexed = measureIndexed();
+        String legacy = measureLegacy();
+        return String.format(Locale.ROOT, "{\"articles\":%d,\"themes\":%d,\"pageSize\":%d,\"workers\":%d,%s,%s}",
+                articles, themes, pageSize, workers, indexed, legacy);
+    }
+
+    private String measureIndexed() throws Exception {
+        NewsStore store = new NewsStore();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+            Future<?>[] tasks = new Future<?>[workers];
+            for (int worker = 0; worker < workers; worker++) {
+                int first = worker;
+                tasks[worker] = executor.submit(() -> {
+                    for (int news = first; news < articles; news += workers) {
+                        store.addNews(theme(news), "News" + news, text(news));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+        if (store.size() != articles) {
+            throw new IllegalStateException("Store holds " + store.size() + " articles, expected " + articles);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink += store.get(random.nextInt(articles)).text().length();
+        }
+        double byIdSeconds = (System.nanoTime() - start) / 1e9;
+
+        int pages = Math.max(lookups / 10, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            sink += render(store.newest(theme(random.nextInt(themes)), 0, pageSize));
+        }
+        double firstPageSeconds = (System.nanoTime() - start) / 1e9;
+
+        int lastOffset = Math.max(articles / themes - pageSize, 0);
+        start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            sink += render(store.newest(theme(random.nextInt(themes)), lastOffset, pageSize));
+        }
+        double lastPageSeconds = (System.nanoTime() - start) / 1e9;
+
+        return String.format(Locale.ROOT, "\"indexed\":{\"loadPerSec\":%.0f,\"byIdPerSec\":%.0f,\"firstPagePerSec\":%.0f,"
+                        + "\"lastPagePerSec\":%.0f}",
+                articles / loadSeconds, lookups / byIdSeconds, pages / firstPageSeconds, pages / lastPageSeconds);
+    }
+
+    // the structure NewsServer used before: theme -> (id -> "name: text"), IDs from a synchronized counter
+    private String measureLegacy() throws Exception {
+        Map<String, Map<String, String>> database = new ConcurrentHashMap<>();
+        long[] counter = {0};
+        Object idLock = new Object();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+            Future<?>[] tasks = new Future<?>[workers];
+            for (int worker = 0; worker < workers; worker++) {
+                int first = worker;
+                tasks[worker] = executor.submit(() -> {
+                    for (int news = first; news < articles; news += workers) {
+                        String id;
+                        synchronized (idLock) {
+                            id = String.valueOf(counter[0]++);
+                        }
+                        database.computeIfAbsent(theme(news), k -> new ConcurrentHashMap<>()).put(id, "News" + news + ": " + text(news));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+        // a lookup scans every theme, so far fewer of them fit in a reasonable run
+        SplittableRandom random = new SplittableRandom(42);
+        int scans = Math.max(lookups / 1000, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            String id = String.valueOf(random.nextInt(articles));
+            for (Map<String, String> news : database.values()) {
+                String text = news.get(id);
+                if (text != null) {
+                    sink += text.length();
+                    break;
+                }
+            }
+        }
+        double byIdSeconds = (System.nanoTime() - start) / 1e9;
+
+        int pages = Math.max(lookups / 10, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            StringBuilder response = new StringBuilder();
+            for (Map.Entry<String, String> entry : database.get(theme(random.nextInt(themes))).entrySet()) {
+                response.append("id").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
+            sink += response.length();
+        }
+        double wholeThemeSeconds = (System.nanoTime() - start) / 1e9;
+
+        return String.format(Locale.ROOT, "\"legacy\":{\"loadPerSec\":%.0f,\"byIdPerSec\":%.0f,\"wholeThemePerSec\":%.0f}",
+                articles / loadSeconds, scans / byIdSeconds, pages / wholeThemeSeconds);
+    }
+
+    private static int render(NewsStore.Page page) {
+        StringBuilder response = new StringBuilder();
+        for (NewsStore.Article article : page.articles()) {
+            response.append("id").append(article.id()).append(": ").append(article).append("\n");
+        }
+        return response.length();
+    }
+
+    private String theme(int news) {
+        return "theme" + news % themes;
+    }
+
+    private static String text(int news) {
+        return "Benchmark news text number " + news;
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.example.proxy.CacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dproxy.diskCacheMaxBytes=0")
+public class ProxyCacheBenchmark {
+    @Param({"1000"})
+    public int keyCount;
+
+    @Param({"16384"})
+    public int responseSize;
+
+    private static final Function<String, String> noHeaders = name -> null;
+
+    private String[] urls;
+    private byte[] response;
+
+    @Setup
+    public void setup() {
+        urls = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            urls[i] = "http://example.com/page/" + i;
+        }
+        byte[] head = "HTTP/1.1 200 OK\r\nCache-Control: max-age=3600\r\nContent-Length: %d\r\n\r\n"
+                .formatted(responseSize).getBytes(StandardCharsets.ISO_8859_1);
+        response = Arrays.copyOf(head, head.length + responseSize);
+        for (String url : urls) {
+            CacheManager.put(url, noHeaders, response);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        CacheManager.clearCache();
+    }
+
+    private String randomUrl() {
+        return urls[ThreadLocalRandom.current().nextInt(urls.length)];
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] hit() {
+        return CacheManager.get(randomUrl(), noHeaders);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public byte[] mixedGet() {
+        return CacheManager.get(randomUrl(), noHeaders);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPut() {
+        CacheManager.put(randomUrl(), noHeaders, response);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+
+import org.example.proxy.ClientHandler;
+
+final class ProxyHarness {
+    interface OriginHandler {
+        void handle(Socket socket) throws IOException;
+    }
+
+    private ProxyHarness() {
+    }
+
+    static ServerSocket startProxy() throws IOException {
+        // channel-backed like ProxyServer, so accepted sockets support transferTo and CONNECT tunnels
+        ServerSocket proxy = ServerSocketChannel.open().bind(new InetSocketAddress(0)).socket();
+        startDaemon("proxy", () -> {
+            while (!proxy.isClosed()) {
+                try {
+                    startDaemon("proxy-handler", new ClientHandler(proxy.accept()));
+                } catch (IOException e) {
+                    if (!proxy.isClosed()) {
+                        System.err.println("Proxy error: " + e.getMessage());
+                    }
+                }
+            }
+        });
+        return proxy;
+    }
+
+    static ServerSocket startOrigin(OriginHandler handler) throws IOException {
+        ServerSocket origin = new ServerSocket(0);
+        startDaemon("origin", () -> {
+            while (!origin.isClosed()) {
+                try {
+                    Socket socket = origin.accept();
+                    startDaemon("origin-handler", () -> {
+                        try (socket) {
+                            handler.handle(socket);
+                        } catch (IOException e) {
+                            System.err.println("Origin error: " + e.getMessage());
+                        }
+                    });
+                } catch (IOException e) {
+                    if (!origin.isClosed()) {
+                        System.err.println("Origin error: " + e.getMessage());
+                    }
+                }
+            }
+        });
+        return origin;
+    }
+
+    static boolean skipRequestHead(InputStream input) throws IOException {
+        int window = 0;
+        int b;
+        while ((b = input.read()) != -1) {
+            window = (window << 8) | b;
+            if (window == 0x0d0a0d0a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public class ProxyStreamingBenchmark {
+    private final long responseSize;
+    private final String cacheControl;
+
+    public ProxyStreamingBenchmark(long responseSize, String cacheControl) {
+        this.responseSize = responseSize;
+        this.cacheControl = cacheControl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "ProxyStreamingBenchmark [sizeMb=100] [runs=5] [cacheControl=no-store] "
+                        + "[output=proxy-streaming-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        long size = options.getLong("sizeMb", 100) * 1024 * 1024;
+        int runs = options.getInt("runs", 5);
+        ProxyStreamingBenchmark benchmark = new ProxyStreamingBenchmark(size, options.get("cacheControl", "no-store"));
+        String json = benchmark.run(runs);
+        options.writeResult(json, "proxy-streaming-result.json");
+    }
+
+    public String run(int runs) throws IOException, InterruptedException {
+        try (ServerSocket origin = ProxyHarness.startOrigin(this::serveOrigin); ServerSocket proxy = ProxyHarness.startProxy()) {
+            StringBuilder results = new StringBuilder();
+            long bestTtfb = Long.MAX_VALUE;
+            long maxPeakHeap = 0;
+            for (int run = 0; run < runs; run++) {
+                System.gc();
+                resetPeakHeap();
+                long heapBefore = currentHeap();
+                long[] timings = fetch(proxy.getLocalPort(), origin.getLocalPort());
+                long peakHeap = peakHeap() - heapBefore;
+
+                bestTtfb = Math.min(bestTtfb, timings[0]);
+                maxPeakHeap = Math.max(maxPeakHeap, peakHeap);
+                results.append(run == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                        "{\"ttfbMicros\":%d,\"totalMillis\":%.1f,\"bytes\":%d,\"peakHeapGrowthBytes\":%d}",
+                        timings[0] / 1000, timings[1] / 1e6, timings[2], peakHeap));
+            }
+            return String.format(Locale.ROOT, "{\"responseBytes\":%d,\"cacheControl\":\"%s\",\"runs\":[%s],"
+                            + "\"bestTtfbMicros\":%d,\"maxPeakHeapGrowthBytes\":%d}",
+                    responseSize, cacheControl, results, bestTtfb / 1000, maxPeakHeap);
+        }
+    }
+
+    private long[] fetch(int proxyPort, int originPort) throws IOException {
+        try (Socket socket = new Socket("localhost", proxyPort)) {
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[64 * 1024];
+
+            long start = System.nanoTime();
+            output.write(("GET http://localhost:" + originPort + "/large HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+
+            int bytesRead = input.read(buffer);
+            long firstByte = System.nanoTime() - start;
+            long total = 0;
+            while (bytesRead != -1) {
+                total += bytesRead;
+                bytesRead = input.read(buffer);
+            }
+            return new long[]{firstByte, System.nanoTime() - start, total};
+        }
+    }
+
+    private void serveOrigin(Socket socket) throws IOException {
+        if (!ProxyHarness.skipRequestHead(socket.getInputStream())) {
+            return;
+        }
+        byte[] block = new byte[64 * 1024];
+        OutputStream output = socket.getOutputStream();
+        output.write(("HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\n"
+                + "Cache-Control: " + cacheControl + "\r\n"
+                + "Content-Length: " + responseSize + "\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        for (long written = 0; written < responseSize; written += block.length) {
+            output.write(block, 0, (int) Math.min(block.length, responseSize - written));
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long currentHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.example.CrawlStore;
+import org.example.Crawler;
+
+public class RecrawlBenchmark {
+    private final int pages;
+    private final int fanout;
+    private final int pageBytes;
+    private final AtomicIntegerArray versions;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public RecrawlBenchmark(int pages, int fanout, int pageBytes) {
+        this.pages = pages;
+        this.fanout = fanout;
+        this.pageBytes = pageBytes;
+        this.versions = new AtomicIntegerArray(pages);
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "RecrawlBenchmark [pages=2000] [fanout=10] [pageBytes=16384] [changedPercent=10] "
+                        + "[concurrency=16] [state=recrawl-state.log] [output=recrawl-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        RecrawlBenchmark benchmark = new RecrawlBenchmark(
+                options.getInt("pages", 2000),
+                options.getInt("fanout", 10),
+                options.getInt("pageBytes", 16384));
+        String json = benchmark.run(options.getInt("changedPercent", 10),
+                options.getInt("concurrency", 16),
+                Paths.get(options.get("state", "recrawl-state.log")));
+        options.writeResult(json, "recrawl-result.json");
+    }
+
+    public String run(int changedPercent, int concurrency, Path state) throws Exception {
+        Files.deleteIfExists(state);
+        try (ServerSocket origin = ProxyHarness.startOrigin(this::serveSite);
+             CloseableHttpClient httpClient = Crawler.createHttpClient(concurrency, concurrency)) {
+            String seed = "http://localhost:" + origin.getLocalPort() + "/page/0";
+
+            String cold = measure("cold", seed, concurrency, httpClient, state);
+            String unchanged = measure("recrawlUnchanged", seed, concurrency, httpClient, state);
+
+            int changed = pages * changedPercent / 100;
+            for (int page = 0; page < changed; page++) {
+                versions.incrementAndGet(page * (pages / Math.max(changed, 1)));
+            }
+            String partlyChanged = measure("recrawl" + changedPercent + "PercentChanged", seed, concurrency, httpClient, state);
+
+            // a crash right before the crawl was marked finished: drop the end record and leave a torn write behind
+            measure("beforeCrash", seed, concurrency, httpClient, state);
+            try (FileChannel channel = FileChannel.open(state, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 17);
+                channel.position(channel.size());
+                channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+            }
+            String resumed = measure("resumedAfterCrash", seed, concurrency, httpClient, state);
+
+            return String.format(Locale.ROOT, "{\"pages\":%d,\"pageBytes\":%d,\"stateBytes\":%d,%s,%s,%s,%s}",
+                    pages, pageBytes, Files.size(state), cold, unchanged, partlyChanged, resumed);
+        } finally {
+            Files.deleteIfExists(state);
+        }
+    }
+
+    private String measure(String name, String seed, int concurrency, CloseableHttpClient httpClient, Path state)
+            throws Exception {
+        int requestsBefore = requests.get();
+        int notModifiedBefore = notModified.get();
+        long bytesBefore = bytesSent.get();
+        Crawler.Result result;
+        try (CrawlStore store = new CrawlStore(state)) {
+            result = new Crawler(Integer.MAX_VALUE, concurrency, concurrency, 0, httpClient, store,
+                    RecrawlBenchmark::discard).crawl(seed);
+        }
+        if (result.pages() != pages) {
+            throw new IllegalStateException("Expected " + pages + " pages, " + name + " crawl fetched " + result.pages());
+        }
+        return String.format(Locale.ROOT, "\"%s\":{\"millis\":%.1f,\"pagesPerSec\":%.1f,\"requests\":%d,"
+                        + "\"notModified\":%d,\"unchanged\":%d,\"bodyBytes\":%d,\"originBytes\":%d}",
+                name, result.elapsedNanos() / 1e6, result.pagesPerSecond(), requests.get() - requestsBefore,
+                notModified.get() - notModifiedBefore, result.unchanged(), result.bytesFetched(),
+                bytesSent.get() - bytesBefore);
+    }
+
+    private static void discard(String url, int depth, Set<String> links) {
+    }
+
+    private void serveSite(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        OutputStream output = socket.getOutputStream();
+        String requestLine;
+        while ((requestLine = reader.readLine()) != null) {
+            String ifNoneMatch = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.regionMatches(true, 0, "If-None-Match:", 0, 14)) {
+                    ifNoneMatch = line.substring(14).trim();
+                }
+            }
+            requests.incrementAndGet();
+            String path = requestLine.split(" ")[1];
+            int page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            int version = versions.get(page);
+            String etag = "\"" + page + "-" + version + "\"";
+
+            byte[] response;
+            if (etag.equals(ifNoneMatch)) {
+                notModified.incrementAndGet();
+                response = ("HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            } else {
+                StringBuilder body = new StringBuilder("<html><body><p>version ").append(version).append("</p>")
+                        .append("<a href=\"/page/0\">home</a>");
+                for (int child = page * fanout + 1; child <= page * fanout + fanout && child < pages; child++) {
+                    body.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a>");
+                }
+                body.append("<p>");
+                while (body.length() < pageBytes - 20) {
+                    body.append("lorem ipsum ");
+                }
+                body.append("</p></body></html>");
+                byte[] bytes = body.toString().getBytes(StandardCharsets.ISO_8859_1);
+                byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nETag: " + etag
+                        + "\r\nContent-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                response = new byte[head.length + bytes.length];
+                System.arraycopy(head, 0, response, 0, head.length);
+                System.arraycopy(bytes, 0, response, head.length, bytes.length);
+            }
+            bytesSent.addAndGet(response.length);
+            output.write(response);
+            output.flush();
+        }
+    }
+}
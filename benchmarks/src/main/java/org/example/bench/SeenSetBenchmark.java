@@ -0,0 +1,120 @@
+package org.example.bench;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.example.UrlCanonicalizer;
+import org.example.UrlSeenSet;
+
+public class SeenSetBenchmark {
+    private final int urls;
+
+    public SeenSetBenchmark(int urls) {
+        this.urls = urls;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "SeenSetBenchmark [urls=1000000] [spillDir=seen-spill] [output=seen-set-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        SeenSetBenchmark benchmark = new SeenSetBenchmark(options.getInt("urls", 1000000));
+        String json = benchmark.run(Paths.get(options.get("spillDir", "seen-spill")));
+        options.writeResult(json, "seen-set-result.json");
+    }
+
+    public String run(Path spillDirectory) throws Exception {
+        String canonical = measureCanonicalization();
+
+        long baseline = usedMemory();
+        Set<String> strings = ConcurrentHashMap.newKeySet();
+        String stringSet = measure("concurrentStringSet", strings::add, strings::contains, baseline);
+        strings = null;
+
+        baseline = usedMemory();
+        UrlSeenSet memory = new UrlSeenSet(urls, Long.MAX_VALUE, null);
+        String fingerprints = measure("fingerprintSet", memory::add, memory::contains, baseline);
+        memory = null;
+
+        // an eighth of the URLs fit in memory, the rest live in sorted runs behind the Bloom filter
+        baseline = usedMemory();
+        String spilled;
+        try (UrlSeenSet spilling = new UrlSeenSet(urls, urls / 8, spillDirectory)) {
+            spilled = measure("fingerprintSetSpilling", spilling::add, spilling::contains, baseline);
+            spilled = spilled.substring(0, spilled.length() - 1) + ",\"stats\":\"" + spilling.getStats() + "\"}";
+        } finally {
+            Files.deleteIfExists(spillDirectory);
+        }
+
+        return String.format(Locale.ROOT, "{\"urls\":%d,%s,%s,%s,%s}", urls, canonical, stringSet, fingerprints, spilled);
+    }
+
+    private String measureCanonicalization() {
+        int mismatches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < urls; i++) {
+            String canonical = UrlCanonicalizer.canonicalize(variant(i));
+            if (canonical == null || !canonical.equals(url(i))) {
+                mismatches++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format(Locale.ROOT, "\"canonicalize\":{\"perSec\":%.0f,\"mismatches\":%d}", urls / seconds, mismatches);
+    }
+
+    private String measure(String name, Predicate<String> add, Predicate<String> contains, long baseline) {
+        long start = System.nanoTime();
+        for (int i = 0; i < urls; i++) {
+            if (!add.test(url(i))) {
+                throw new IllegalStateException(name + " reported a new URL as seen: " + url(i));
+            }
+        }
+        double addSeconds = (System.nanoTime() - start) / 1e9;
+        long retained = usedMemory() - baseline;
+
+        // half of the lookups hit, the other half are URLs the set has never seen
+        start = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < urls; i++) {
+            if (contains.test(i % 2 == 0 ? url(i) : url(urls + i))) {
+                hits++;
+            }
+        }
+        double lookupSeconds = (System.nanoTime() - start) / 1e9;
+        if (hits < urls / 2) {
+            throw new IllegalStateException(name + " lost URLs: " + hits + " hits");
+        }
+        return String.format(Locale.ROOT, "\"%s\":{\"retainedMB\":%.1f,\"bytesPerUrl\":%.1f,\"addsPerSec\":%.0f,"
+                        + "\"lookupsPerSec\":%.0f,\"falsePositives\":%d}",
+                name, retained / 1048576.0, (double) retained / urls, urls / addSeconds, urls / lookupSeconds,
+                hits - (urls + 1) / 2);
+    }
+
+    private static String url(int i) {
+        return "https://host" + (i % 1000) + ".example.com/articles/" + i + "/index.html?ref=" + (i % 7);
+    }
+
+    private static String variant(int i) {
+        return switch (i % 4) {
+            case 0 -> url(i);
+            case 1 -> "HTTPS://Host" + (i % 1000) + ".Example.com:443/articles/" + i + "/index.html?ref=" + (i % 7);
+            case 2 -> url(i) + "#comments";
+            default -> "https://host" + (i % 1000) + ".example.com/articles/./" + i + "/%69ndex.html?ref=" + (i % 7);
+        };
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
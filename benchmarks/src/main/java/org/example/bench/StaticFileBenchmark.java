@@ -0,0 +1,63 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class StaticFileBenchmark {
+    @Param({"1024", "1048576", "524288000"})
+    public long size;
+
+    private Path root;
+    private HttpRequestParser parser;
+    private byte[] request;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("static-bench");
+        try (RandomAccessFile file = new RandomAccessFile(root.resolve("file.bin").toFile(), "rw")) {
+            byte[] block = new byte[64 * 1024];
+            ThreadLocalRandom.current().nextBytes(block);
+            for (long written = 0; written < size; written += block.length) {
+                file.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        parser = BenchmarkRequests.newParser();
+        request = BenchmarkRequests.get("/file.bin");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(root.resolve("file.bin"));
+        Files.deleteIfExists(root);
+    }
+
+    @Benchmark
+    public long serve() throws IOException, HttpParseException {
+        return BenchmarkRequests.send(BenchmarkRequests.handle(parser, request, root.toString()));
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.example.proxy.TunnelRelay;
+
+public class TunnelThroughputBenchmark {
+    private final long bytesPerTunnel;
+    private final int tunnels;
+
+    public TunnelThroughputBenchmark(long bytesPerTunnel, int tunnels) {
+        this.bytesPerTunnel = bytesPerTunnel;
+        this.tunnels = tunnels;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args,
+                "TunnelThroughputBenchmark [sizeMb=256] [tunnels=8] [output=tunnel-result.json]");
+        if (options == null) {
+            return;
+        }
+
+        TunnelThroughputBenchmark benchmark = new TunnelThroughputBenchmark(
+                options.getLong("sizeMb", 256) * 1024 * 1024,
+                options.getInt("tunnels", 8));
+        String json = benchmark.run();
+        System.out.println("Tunnels: " + TunnelRelay.getStats());
+        options.writeResult(json, "tunnel-result.json");
+    }
+
+    public String run() throws Exception {
+        // a plain TCP echo stands in for a TLS origin: the tunnel never looks at the bytes it relays
+        try (ServerSocket echo = ProxyHarness.startOrigin(TunnelThroughputBenchmark::echo);
+             ServerSocket proxy = ProxyHarness.startProxy()) {
+            double direct = measure(echo.getLocalPort(), -1);
+            double tunnelled = measure(echo.getLocalPort(), proxy.getLocalPort());
+            return String.format(Locale.ROOT, "{\"tunnels\":%d,\"bytesPerTunnel\":%d,\"directMBps\":%.1f,"
+                    + "\"tunnelMBps\":%.1f,\"ratio\":%.3f}", tunnels, bytesPerTunnel, direct, tunnelled, tunnelled / direct);
+        }
+    }
+
+    private double measure(int echoPort, int proxyPort) throws Exception {
+        try (ExecutorService executor = Executors.newCachedThreadPool()) {
+            long start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < tunnels; i++) {
+                results.add(executor.submit(() -> roundTrip(executor, echoPort, proxyPort)));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            // every byte crosses the tunnel twice: out to the echo and back
+            return 2.0 * total / (1024 * 1024) / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private long roundTrip(ExecutorService executor, int echoPort, int proxyPort) throws Exception {
+        try (Socket socket = proxyPort < 0 ? new Socket("localhost", echoPort) : new Socket("localhost", proxyPort)) {
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            if (proxyPort >= 0) {
+                output.write(("CONNECT localhost:" + echoPort + " HTTP/1.1\r\nHost: localhost:" + echoPort + "\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                if (!ProxyHarness.skipRequestHead(input)) {
+                    throw new IOException("Proxy closed the connection before establishing the tunnel");
+                }
+            }
+
+            Future<?> sender = executor.submit(() -> {
+                byte[] block = new byte[64 * 1024];
+                for (long sent = 0; sent < bytesPerTunnel; sent += block.length) {
+                    output.write(block, 0, (int) Math.min(block.length, bytesPerTunnel - sent));
+                }
+                socket.shutdownOutput();
+                return null;
+            });
+
+            byte[] buffer = new byte[64 * 1024];
+            long received = 0;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                received += bytesRead;
+            }
+            sender.get();
+            if (received != bytesPerTunnel) {
+                throw new IOException("Echoed " + received + " of " + bytesPerTunnel + " bytes");
+            }
+            return received;
+        }
+    }
+
+    private static void echo(Socket socket) throws IOException {
+        InputStream input = socket.getInputStream();
+        OutputStream output = socket.getOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int bytesRead;
+        while ((bytesRead = input.read(buffer)) != -1) {
+            output.write(buffer, 0, bytesRead);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.common;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConnectionExecutor {
+    public enum Mode {
+        THREAD, POOL, VIRTUAL
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final int maxConcurrent;
+    private final int queueLimit;
+    // connections over the concurrency limit wait here as plain Runnables, not as parked threads
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ConnectionExecutor(String name, Mode mode, int maxConcurrent, int queueLimit) {
+        this.mode = mode;
+        this.maxConcurrent = maxConcurrent;
+        this.queueLimit = queueLimit;
+
+        switch (mode) {
+            case VIRTUAL:
+                this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+                break;
+            case POOL:
+                this.executor = Executors.newFixedThreadPool(maxConcurrent, Thread.ofPlatform().name(name + "-", 0).factory());
+                break;
+            default:
+                this.executor = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name(name + "-", 0).factory());
+                break;
+        }
+    }
+
+    public static ConnectionExecutor fromSystemProperties(String prefix) {
+        Mode mode = parseMode(prefix + ".executor", System.getProperty(prefix + ".executor", "thread"));
+        int defaultMax = mode == Mode.POOL ? Runtime.getRuntime().availableProcessors() * 50 : Integer.MAX_VALUE / 2;
+        int maxConcurrent = Integer.getInteger(prefix + ".maxConnections", defaultMax);
+        int queueLimit = Integer.getInteger(prefix + ".queueLimit", mode == Mode.POOL ? maxConcurrent : 0);
+        return new ConnectionExecutor(prefix, mode, maxConcurrent, queueLimit);
+    }
+
+    private static Mode parseMode(String property, String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + property + " '" + value + "', expected one of "
+                    + Arrays.toString(Mode.values()).toLowerCase(Locale.ROOT), e);
+        }
+    }
+
+    public boolean submit(Runnable task) {
+        if (tryStart()) {
+            executor.execute(() -> runFrom(task));
+            return true;
+        }
+        if (queued.incrementAndGet() > queueLimit) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        queue.offer(task);
+        // a worker may have finished between the failed tryStart and the offer, leaving nobody to pick this up
+        startQueued();
+        return true;
+    }
+
+    private boolean tryStart() {
+        int current;
+        do {
+            current = active.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+        } while (!active.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // a worker keeps its slot and thread while there is queued work, so a backlog never costs more threads
+    private void runFrom(Runnable task) {
+        try {
+            while (task != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                task = poll();
+            }
+        } finally {
+            active.decrementAndGet();
+        }
+        startQueued();
+    }
+
+    private void startQueued() {
+        while (!queue.isEmpty() && tryStart()) {
+            Runnable next = poll();
+            if (next != null) {
+                executor.execute(() -> runFrom(next));
+                return;
+            }
+            active.decrementAndGet();
+        }
+    }
+
+    private Runnable poll() {
+        Runnable next = queue.poll();
+        if (next != null) {
+            queued.decrementAndGet();
+        }
+        return next;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String describe() {
+        String limit = maxConcurrent >= Integer.MAX_VALUE / 2 ? "unlimited" : String.valueOf(maxConcurrent);
+        return mode.name().toLowerCase(Locale.ROOT) + " (max connections: " + limit + ", queue limit: " + queueLimit + ")";
+    }
+
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
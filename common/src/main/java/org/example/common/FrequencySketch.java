@@ -0,0 +1,67 @@
+package org.example.common;
+
+public class FrequencySketch {
+    private static final long[] seeds = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long resetMask = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(expectedEntries, 64) - 1) << 1;
+        this.table = new long[size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < seeds.length; i++) {
+            long mixed = mix(hash, i);
+            int index = (int) mixed & mask;
+            int shift = (int) ((mixed >>> 40) & 15) << 2;
+            if (((table[index] >>> shift) & 15) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int i = 0; i < seeds.length; i++) {
+            long mixed = mix(hash, i);
+            int shift = (int) ((mixed >>> 40) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[(int) mixed & mask] >>> shift) & 15));
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & resetMask;
+        }
+        additions /= 2;
+    }
+
+    private static long mix(int hash, int index) {
+        long mixed = (hash + seeds[index]) * seeds[index];
+        return mixed ^ (mixed >>> 32);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.common;
+
+public class HttpParseException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String reason;
+
+    public HttpParseException(int statusCode, String reason) {
+        super(statusCode + " " + reason);
+        this.statusCode = statusCode;
+        this.reason = reason;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,447 @@
+package org.example.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class HttpRequestParser {
+    public static final BufferPool bodyPool = new BufferPool(16 * 1024, 256);
+
+    private enum State {
+        REQUEST_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS, DONE
+    }
+
+    private final int maxHeaderBytes;
+    private final int maxHeaders;
+    private final int maxBodyBytes;
+
+    private final byte[] head;
+    private int headLength;
+    private int lineStart;
+
+    private int methodEnd;
+    private int targetStart;
+    private int targetEnd;
+    private int versionStart;
+    private int versionEnd;
+
+    private final int[] nameStart;
+    private final int[] nameEnd;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+    private int headerCount;
+
+    private State state = State.REQUEST_LINE;
+    private long remaining;
+    private boolean chunkExtension;
+    private int lineLength;
+    private ByteBuffer body;
+
+    public HttpRequestParser(int maxHeaderBytes, int maxHeaders, int maxBodyBytes) {
+        this.maxHeaderBytes = maxHeaderBytes;
+        this.maxHeaders = maxHeaders;
+        this.maxBodyBytes = maxBodyBytes;
+        this.head = new byte[maxHeaderBytes];
+        this.nameStart = new int[maxHeaders];
+        this.nameEnd = new int[maxHeaders];
+        this.valueStart = new int[maxHeaders];
+        this.valueEnd = new int[maxHeaders];
+    }
+
+    public boolean parse(ByteBuffer input) throws HttpParseException {
+        while (state != State.DONE && input.hasRemaining()) {
+            switch (state) {
+                case REQUEST_LINE:
+                case HEADERS:
+                    parseHead(input);
+                    break;
+                case BODY:
+                case CHUNK_DATA:
+                    copyBody(input);
+                    break;
+                case CHUNK_SIZE:
+                    parseChunkSize(input.get());
+                    break;
+                case CHUNK_DATA_END:
+                    parseChunkEnd(input.get());
+                    break;
+                case TRAILERS:
+                    parseTrailer(input.get());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    public boolean isIdle() {
+        return state == State.REQUEST_LINE && headLength == 0;
+    }
+
+    public void reset() {
+        state = State.REQUEST_LINE;
+        headLength = 0;
+        lineStart = 0;
+        headerCount = 0;
+        remaining = 0;
+        chunkExtension = false;
+        lineLength = 0;
+        if (body != null) {
+            bodyPool.release(body);
+            body = null;
+        }
+    }
+
+    public String method() {
+        return string(0, methodEnd);
+    }
+
+    public boolean methodIs(String method) {
+        return matches(0, methodEnd, method, false);
+    }
+
+    public String target() {
+        return string(targetStart, targetEnd);
+    }
+
+    public String version() {
+        return string(versionStart, versionEnd);
+    }
+
+    public int headerCount() {
+        return headerCount;
+    }
+
+    public String headerName(int index) {
+        return string(nameStart[index], nameEnd[index]);
+    }
+
+    public String headerValue(int index) {
+        return string(valueStart[index], valueEnd[index]);
+    }
+
+    public boolean headerNameIs(int index, String name) {
+        return matches(nameStart[index], nameEnd[index], name, true);
+    }
+
+    public String header(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : headerValue(index);
+    }
+
+    public boolean hasHeader(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    public boolean headerContainsToken(String name, String token) {
+        for (int i = 0; i < headerCount; i++) {
+            if (!headerNameIs(i, name)) {
+                continue;
+            }
+            int start = valueStart[i];
+            int end = valueEnd[i];
+            while (start < end) {
+                int comma = start;
+                while (comma < end && head[comma] != ',') {
+                    comma++;
+                }
+                int tokenStart = start;
+                int tokenEnd = comma;
+                while (tokenStart < tokenEnd && isWhitespace(head[tokenStart])) {
+                    tokenStart++;
+                }
+                while (tokenEnd > tokenStart && isWhitespace(head[tokenEnd - 1])) {
+                    tokenEnd--;
+                }
+                if (matches(tokenStart, tokenEnd, token, true)) {
+                    return true;
+                }
+                start = comma + 1;
+            }
+        }
+        return false;
+    }
+
+    public ByteBuffer body() {
+        if (body == null) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer view = body.duplicate();
+        view.flip();
+        return view;
+    }
+
+    public int bodyLength() {
+        return body == null ? 0 : body.position();
+    }
+
+    private void parseHead(ByteBuffer input) throws HttpParseException {
+        while (input.hasRemaining()) {
+            if (headLength == maxHeaderBytes) {
+                throw new HttpParseException(431, "Request Header Fields Too Large");
+            }
+            byte b = input.get();
+            head[headLength++] = b;
+            if (b == '\n') {
+                int lineEnd = headLength - 1;
+                if (lineEnd > lineStart && head[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (state == State.REQUEST_LINE) {
+                    parseRequestLine(lineEnd);
+                } else {
+                    parseHeaderLine(lineEnd);
+                }
+                lineStart = headLength;
+                if (state != State.REQUEST_LINE && state != State.HEADERS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void parseRequestLine(int lineEnd) throws HttpParseException {
+        if (lineEnd == lineStart) {
+            headLength = 0;
+            return;
+        }
+
+        int firstSpace = indexOf((byte) ' ', 0, lineEnd);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf((byte) ' ', firstSpace + 1, lineEnd);
+        if (firstSpace <= 0 || secondSpace <= firstSpace + 1 || secondSpace == lineEnd - 1
+                || indexOf((byte) ' ', secondSpace + 1, lineEnd) >= 0) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        methodEnd = firstSpace;
+        targetStart = firstSpace + 1;
+        targetEnd = secondSpace;
+        versionStart = secondSpace + 1;
+        versionEnd = lineEnd;
+        if (!matches(versionStart, versionEnd, "HTTP/1.1", false)
+                && !matches(versionStart, versionEnd, "HTTP/1.0", false)) {
+            throw new HttpParseException(505, "HTTP Version Not Supported");
+        }
+        state = State.HEADERS;
+    }
+
+    private void parseHeaderLine(int lineEnd) throws HttpParseException {
+        if (lineEnd == lineStart) {
+            startBody();
+            return;
+        }
+        if (isWhitespace(head[lineStart])) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (headerCount == maxHeaders) {
+            throw new HttpParseException(431, "Request Header Fields Too Large");
+        }
+
+        int colon = indexOf((byte) ':', lineStart, lineEnd);
+        if (colon <= lineStart || isWhitespace(head[colon - 1])) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        int start = colon + 1;
+        int end = lineEnd;
+        while (start < end && isWhitespace(head[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(head[end - 1])) {
+            end--;
+        }
+
+        nameStart[headerCount] = lineStart;
+        nameEnd[headerCount] = colon;
+        valueStart[headerCount] = start;
+        valueEnd[headerCount] = end;
+        headerCount++;
+    }
+
+    private void startBody() throws HttpParseException {
+        boolean chunked = headerContainsToken("Transfer-Encoding", "chunked");
+        int contentLengthIndex = indexOf("Content-Length");
+        if (chunked && contentLengthIndex >= 0) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        if (chunked) {
+            state = State.CHUNK_SIZE;
+            remaining = 0;
+            return;
+        }
+
+        long contentLength = 0;
+        for (int i = 0; i < headerCount; i++) {
+            if (headerNameIs(i, "Content-Length")) {
+                long value = parseDecimal(valueStart[i], valueEnd[i]);
+                if (i != contentLengthIndex && value != contentLength) {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                contentLength = value;
+            }
+        }
+        if (contentLength > maxBodyBytes) {
+            throw new HttpParseException(413, "Payload Too Large");
+        }
+
+        remaining = contentLength;
+        state = contentLength == 0 ? State.DONE : State.BODY;
+        if (contentLength > 0) {
+            ensureBodyCapacity((int) contentLength);
+        }
+    }
+
+    private void copyBody(ByteBuffer input) {
+        int length = (int) Math.min(remaining, input.remaining());
+        ensureBodyCapacity(length);
+        int limit = input.limit();
+        input.limit(input.position() + length);
+        body.put(input);
+        input.limit(limit);
+        remaining -= length;
+
+        if (remaining == 0) {
+            state = state == State.BODY ? State.DONE : State.CHUNK_DATA_END;
+        }
+    }
+
+    private void parseChunkSize(byte b) throws HttpParseException {
+        if (++lineLength > 1024) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (b == '\n') {
+            lineLength = 0;
+            chunkExtension = false;
+            if (remaining == 0) {
+                state = State.TRAILERS;
+            } else {
+                if (bodyLength() + remaining > maxBodyBytes) {
+                    throw new HttpParseException(413, "Payload Too Large");
+                }
+                state = State.CHUNK_DATA;
+            }
+            return;
+        }
+        if (chunkExtension || b == '\r') {
+            return;
+        }
+        if (b == ';' || b == ' ' || b == '\t') {
+            chunkExtension = true;
+            return;
+        }
+
+        int digit = Character.digit(b, 16);
+        if (digit < 0) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        remaining = remaining * 16 + digit;
+        if (remaining > maxBodyBytes) {
+            throw new HttpParseException(413, "Payload Too Large");
+        }
+    }
+
+    private void parseChunkEnd(byte b) throws HttpParseException {
+        if (b == '\r') {
+            return;
+        }
+        if (b != '\n') {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        remaining = 0;
+        state = State.CHUNK_SIZE;
+    }
+
+    private void parseTrailer(byte b) throws HttpParseException {
+        if (b == '\n') {
+            if (lineLength == 0) {
+                state = State.DONE;
+            }
+            lineLength = 0;
+            return;
+        }
+        if (b != '\r' && ++lineLength > maxHeaderBytes) {
+            throw new HttpParseException(431, "Request Header Fields Too Large");
+        }
+    }
+
+    private void ensureBodyCapacity(int additional) {
+        if (body == null) {
+            body = additional <= bodyPool.getBufferSize() ? bodyPool.acquire() : ByteBuffer.allocate(additional);
+            return;
+        }
+        if (body.remaining() >= additional) {
+            return;
+        }
+
+        int required = body.position() + additional;
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(required, body.capacity() * 2), maxBodyBytes));
+        body.flip();
+        larger.put(body);
+        bodyPool.release(body);
+        body = larger;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < headerCount; i++) {
+            if (headerNameIs(i, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (head[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long parseDecimal(int start, int end) throws HttpParseException {
+        if (start == end || end - start > 18) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = head[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private boolean matches(int start, int end, String value, boolean ignoreCase) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            int a = head[start + i];
+            int b = value.charAt(i);
+            if (a != b && (!ignoreCase || toLower(a) != toLower(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int start, int end) {
+        return new String(head, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + 32 : c;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
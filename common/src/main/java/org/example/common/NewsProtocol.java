@@ -0,0 +1,228 @@
+package org.example.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NewsProtocol {
+    public static final int HELP = 1;
+    public static final int EXIT = 2;
+    public static final int THEMES = 3;
+    public static final int NEWS_BY_THEME = 4;
+    public static final int NEWS_TEXT = 5;
+    public static final int ADD_THEME = 6;
+    public static final int ADD_NEWS = 7;
+    public static final int UNKNOWN = 8;
+    public static final int RESPONSE = 64;
+
+    public record Request(int opcode, List<String> args) {
+        public String arg(int index) {
+            return args.get(index);
+        }
+    }
+
+    // a binary client opens with these bytes; a Java-serialization client opens with 0xACED instead
+    private static final byte[] hello = {'N', 'E', 'W', 'S', 1};
+    private static final String pageFlag = " --page ";
+    private static final int maxFrameBytes = 16 * 1024 * 1024;
+    // the fewest fields the server reads for each opcode; ADD_NEWS checks its own and answers with a usage message
+    private static final int[] minRequestFields = {0, 0, 0, 0, 1, 1, 1, 0, 0};
+
+    // looks at the first bytes a client sent: a binary hello is consumed, a Java serialization header is left in place
+    public static boolean acceptBinary(InputStream input) throws IOException {
+        input.mark(2);
+        byte[] head = input.readNBytes(2);
+        input.reset();
+        if (isSerializationHeader(head)) {
+            return false;
+        }
+        if (!Arrays.equals(input.readNBytes(hello.length), hello)) {
+            throw new ProtocolException("Unknown protocol");
+        }
+        return true;
+    }
+
+    private static boolean isSerializationHeader(byte[] head) {
+        return head.length >= 2 && (head[0] & 0xff) == 0xac && (head[1] & 0xff) == 0xed;
+    }
+
+    // returns false if the server answered in the legacy format, in which case the caller reconnects with it
+    public static boolean clientHello(InputStream input, OutputStream output) throws IOException {
+        output.write(hello);
+        output.flush();
+        // an old server sends its 4-byte stream header and then waits, so never ask for more than it will send
+        byte[] head = input.readNBytes(2);
+        if (isSerializationHeader(head)) {
+            return false;
+        }
+        byte[] rest = input.readNBytes(hello.length - 2);
+        if (head.length == 2 && hello[0] == head[0] && hello[1] == head[1]
+                && Arrays.equals(rest, Arrays.copyOfRange(hello, 2, hello.length))) {
+            return true;
+        }
+        throw new ProtocolException("Unexpected handshake from news server");
+    }
+
+    public static void serverHello(OutputStream output) throws IOException {
+        output.write(hello);
+        output.flush();
+    }
+
+    // the text commands typed by users map onto opcodes exactly as the server used to split them
+    public static Request parse(String command) {
+        if (command.equals("help")) {
+            return new Request(HELP, List.of());
+        }
+        if (command.equals("exit")) {
+            return new Request(EXIT, List.of());
+        }
+        if (command.equals("themes")) {
+            return new Request(THEMES, List.of());
+        }
+
+        String[] parts = command.split(" ", 2);
+        if (parts.length > 1) {
+            switch (parts[0]) {
+                case "newsbytheme": {
+                    // the page is named explicitly, so a theme such as "Top 10" is never mistaken for theme "Top", page 10
+                    String rest = parts[1].trim();
+                    int flag = rest.lastIndexOf(pageFlag);
+                    if (flag >= 0 && rest.indexOf(' ', flag + pageFlag.length()) < 0) {
+                        return new Request(NEWS_BY_THEME,
+                                List.of(rest.substring(0, flag).trim(), rest.substring(flag + pageFlag.length())));
+                    }
+                    return new Request(NEWS_BY_THEME, List.of(rest));
+                }
+                case "newstext":
+                    return new Request(NEWS_TEXT, List.of(parts[1].trim()));
+                case "addtheme":
+                    return new Request(ADD_THEME, List.of(parts[1].trim()));
+                case "addnews":
+                    List<String> fields = new ArrayList<>(3);
+                    for (String field : parts[1].split(" ", 3)) {
+                        fields.add(field.trim());
+                    }
+                    return new Request(ADD_NEWS, fields);
+                default:
+                    break;
+            }
+        }
+        return new Request(UNKNOWN, List.of(command));
+    }
+
+    public static void writeRequest(OutputStream output, Request request) throws IOException {
+        writeFrame(output, request.opcode(), request.args());
+    }
+
+    public static Request readRequest(InputStream input) throws IOException {
+        int opcode = input.read();
+        if (opcode == -1) {
+            throw new EOFException("Connection closed");
+        }
+        if (opcode < HELP || opcode > UNKNOWN) {
+            throw new ProtocolException("Unknown opcode " + opcode);
+        }
+        List<String> fields = readFields(input);
+        if (fields.size() < minRequestFields[opcode]) {
+            throw new ProtocolException("Request with opcode " + opcode + " has " + fields.size() + " fields, expected "
+                    + minRequestFields[opcode]);
+        }
+        return new Request(opcode, fields);
+    }
+
+    public static void writeResponse(OutputStream output, String response) throws IOException {
+        writeFrame(output, RESPONSE, List.of(response));
+    }
+
+    public static String readResponse(InputStream input) throws IOException {
+        int opcode = input.read();
+        if (opcode == -1) {
+            throw new EOFException("Connection closed");
+        }
+        if (opcode != RESPONSE) {
+            throw new ProtocolException("Expected a response frame, got opcode " + opcode);
+        }
+        List<String> fields = readFields(input);
+        if (fields.size() != 1) {
+            throw new ProtocolException("Response frame with " + fields.size() + " fields");
+        }
+        return fields.get(0);
+    }
+
+    // frame: opcode byte, varint payload length, then each field as a varint length and its UTF-8 bytes
+    private static void writeFrame(OutputStream output, int opcode, List<String> fields) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            writeVarint(payload, bytes.length);
+            payload.write(bytes);
+        }
+        output.write(opcode);
+        writeVarint(output, payload.size());
+        payload.writeTo(output);
+        output.flush();
+    }
+
+    private static List<String> readFields(InputStream input) throws IOException {
+        int length = readVarint(input);
+        if (length > maxFrameBytes) {
+            throw new ProtocolException("Frame of " + length + " bytes exceeds the limit");
+        }
+        byte[] payload = input.readNBytes(length);
+        if (payload.length != length) {
+            throw new EOFException("Connection closed in the middle of a frame");
+        }
+
+        List<String> fields = new ArrayList<>(3);
+        int position = 0;
+        while (position < length) {
+            int fieldLength = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= length || shift > 28) {
+                    throw new ProtocolException("Malformed field length");
+                }
+                b = payload[position++];
+                fieldLength |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (fieldLength < 0 || fieldLength > length - position) {
+                throw new ProtocolException("Field overruns its frame");
+            }
+            fields.add(new String(payload, position, fieldLength, StandardCharsets.UTF_8));
+            position += fieldLength;
+        }
+        return fields;
+    }
+
+    private static void writeVarint(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarint(InputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift <= 28; shift += 7) {
+            int b = input.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NewsStore {
+    public record Article(long id, String theme, String name, String text) {
+        @Override
+        public String toString() {
+            return name + ": " + text;
+        }
+    }
+
+    public record Page(List<Article> articles, int offset, int total) {
+        public boolean hasMore() {
+            return offset + articles.size() < total;
+        }
+    }
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final ConcurrentHashMap<Long, Article> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Theme> themes = new ConcurrentHashMap<>();
+
+    public void addTheme(String theme) {
+        themes.computeIfAbsent(theme, Theme::new);
+    }
+
+    public Article addNews(String theme, String name, String text) {
+        Article article = themes.computeIfAbsent(theme, Theme::new).append(name, text);
+        byId.put(article.id(), article);
+        return article;
+    }
+
+    public Article get(long id) {
+        return byId.get(id);
+    }
+
+    public Set<String> themes() {
+        return themes.keySet();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    // returns null for a theme that does not exist, so callers can tell it apart from an empty one
+    public Page newest(String theme, int offset, int limit) {
+        Theme entries = themes.get(theme);
+        return entries == null ? null : entries.newest(offset, limit);
+    }
+
+    private final class Theme {
+        private final String name;
+        // append-only, in ID order; readers take size first and never look past it, so they need no lock
+        private volatile Article[] articles = new Article[4];
+        private volatile int size;
+
+        Theme(String name) {
+            this.name = name;
+        }
+
+        // the ID is taken under the theme lock so each theme's array stays sorted by ID
+        synchronized Article append(String title, String text) {
+            Article article = new Article(nextId.getAndIncrement(), name, title, text);
+            Article[] current = articles;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                articles = current;
+            }
+            current[size] = article;
+            size = size + 1;
+            return article;
+        }
+
+        Page newest(int offset, int limit) {
+            int count = size;
+            Article[] snapshot = articles;
+            List<Article> page = new ArrayList<>(Math.max(0, Math.min(limit, count - offset)));
+            for (int i = count - 1 - offset; i >= 0 && page.size() < limit; i--) {
+                page.add(snapshot[i]);
+            }
+            return new Page(page, offset, count);
+        }
+    }
+}
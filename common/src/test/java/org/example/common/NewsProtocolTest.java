@@ -0,0 +1,135 @@
+package org.example.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class NewsProtocolTest {
+    private static final byte[] hello = {'N', 'E', 'W', 'S', 1};
+
+    @Test
+    void requestsAndResponsesSurviveARoundTrip() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String longText = "x".repeat(300) + " ünïcödé";
+        NewsProtocol.writeRequest(output, new NewsProtocol.Request(NewsProtocol.ADD_NEWS, List.of("theme", "name", longText)));
+        NewsProtocol.writeRequest(output, new NewsProtocol.Request(NewsProtocol.THEMES, List.of()));
+        NewsProtocol.writeResponse(output, "");
+        NewsProtocol.writeResponse(output, longText);
+
+        InputStream input = new ByteArrayInputStream(output.toByteArray());
+        assertEquals(new NewsProtocol.Request(NewsProtocol.ADD_NEWS, List.of("theme", "name", longText)),
+                NewsProtocol.readRequest(input));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.THEMES, List.of()), NewsProtocol.readRequest(input));
+        assertEquals("", NewsProtocol.readResponse(input));
+        assertEquals(longText, NewsProtocol.readResponse(input));
+        assertThrows(EOFException.class, () -> NewsProtocol.readRequest(input));
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        // NEWS_TEXT with no ID
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.NEWS_TEXT, 0));
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.ADD_THEME, 0));
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.NEWS_BY_THEME, 0));
+        assertThrows(ProtocolException.class, () -> read(0, 0));
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.RESPONSE, 0));
+        // a field that claims more bytes than its frame holds
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.NEWS_TEXT, 2, 5, 'a'));
+        // a varint that never ends
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.NEWS_TEXT, 0x80, 0x80, 0x80, 0x80, 0x80));
+        // a frame larger than the limit is refused before anything is allocated
+        assertThrows(ProtocolException.class, () -> read(NewsProtocol.NEWS_TEXT, 0x80, 0x80, 0x80, 0x40));
+        // the connection drops half way through a frame
+        assertThrows(EOFException.class, () -> read(NewsProtocol.NEWS_TEXT, 5, 1, 'a'));
+    }
+
+    @Test
+    void parseMapsTextCommandsOntoOpcodes() {
+        assertEquals(new NewsProtocol.Request(NewsProtocol.HELP, List.of()), NewsProtocol.parse("help"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.NEWS_TEXT, List.of("7")), NewsProtocol.parse("newstext 7"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.ADD_NEWS, List.of("theme", "name", "some long text")),
+                NewsProtocol.parse("addnews theme name some long text"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.UNKNOWN, List.of("newstext")), NewsProtocol.parse("newstext"));
+    }
+
+    @Test
+    void themesEndingInANumberAreNotTakenForAPage() {
+        assertEquals(new NewsProtocol.Request(NewsProtocol.NEWS_BY_THEME, List.of("Top 10")),
+                NewsProtocol.parse("newsbytheme Top 10"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.NEWS_BY_THEME, List.of("Top 10", "3")),
+                NewsProtocol.parse("newsbytheme Top 10 --page 3"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.NEWS_BY_THEME, List.of("theme1", "x")),
+                NewsProtocol.parse("newsbytheme theme1 --page x"));
+        assertEquals(new NewsProtocol.Request(NewsProtocol.NEWS_BY_THEME, List.of("a --page b c")),
+                NewsProtocol.parse("newsbytheme a --page b c"));
+    }
+
+    @Test
+    void serverTellsBinaryClientsFromSerializationClients() throws IOException {
+        InputStream binary = new BufferedInputStream(new ByteArrayInputStream(concat(hello, new byte[] {NewsProtocol.HELP, 0})));
+        assertTrue(NewsProtocol.acceptBinary(binary));
+        assertEquals(NewsProtocol.HELP, NewsProtocol.readRequest(binary).opcode());
+
+        byte[] stream = serializationStream("help");
+        InputStream legacy = new BufferedInputStream(new ByteArrayInputStream(stream));
+        assertFalse(NewsProtocol.acceptBinary(legacy));
+        // the serialization header is left for the ObjectInputStream that reads it next
+        assertArrayEquals(stream, legacy.readAllBytes());
+
+        assertThrows(ProtocolException.class,
+                () -> NewsProtocol.acceptBinary(new BufferedInputStream(new ByteArrayInputStream("GET / HTTP/1.1".getBytes()))));
+    }
+
+    @Test
+    void clientFallsBackWhenTheServerOnlySpeaksSerialization() throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        assertTrue(NewsProtocol.clientHello(new ByteArrayInputStream(hello), sent));
+        assertArrayEquals(hello, sent.toByteArray());
+
+        // an old server writes only its stream header, so the client must decide from those bytes alone
+        InputStream oldServer = new ByteArrayInputStream(serializationStream(null));
+        assertFalse(NewsProtocol.clientHello(oldServer, new ByteArrayOutputStream()));
+
+        assertThrows(ProtocolException.class, () -> NewsProtocol.clientHello(
+                new ByteArrayInputStream(new byte[] {'N', 'E', 'W', 'S', 2}), new ByteArrayOutputStream()));
+    }
+
+    private static NewsProtocol.Request read(int... bytes) throws IOException {
+        byte[] frame = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            frame[i] = (byte) bytes[i];
+        }
+        return NewsProtocol.readRequest(new ByteArrayInputStream(frame));
+    }
+
+    private static byte[] serializationStream(String object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            if (object != null) {
+                output.writeObject(object);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
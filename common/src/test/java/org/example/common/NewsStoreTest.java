@@ -0,0 +1,99 @@
+package org.example.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class NewsStoreTest {
+    @Test
+    void pagesRunNewestFirstWithoutGapsOrRepeats() {
+        NewsStore store = new NewsStore();
+        for (int i = 0; i < 45; i++) {
+            store.addNews("sport", "News" + i, "text" + i);
+            store.addNews("other", "Other" + i, "text" + i);
+        }
+
+        NewsStore.Page first = store.newest("sport", 0, 20);
+        assertEquals(45, first.total());
+        assertEquals(20, first.articles().size());
+        assertEquals("News44", first.articles().get(0).name());
+        assertTrue(first.hasMore());
+
+        NewsStore.Page last = store.newest("sport", 40, 20);
+        assertEquals(5, last.articles().size());
+        assertEquals("News0", last.articles().get(4).name());
+        assertFalse(last.hasMore());
+
+        List<String> names = new ArrayList<>();
+        for (int offset = 0; offset < 45; offset += 20) {
+            for (NewsStore.Article article : store.newest("sport", offset, 20).articles()) {
+                assertEquals("sport", article.theme());
+                names.add(article.name());
+            }
+        }
+        assertEquals(45, names.size());
+        for (int i = 0; i < 45; i++) {
+            assertEquals("News" + (44 - i), names.get(i));
+        }
+    }
+
+    @Test
+    void pastTheEndIsEmptyAndUnknownThemeIsNull() {
+        NewsStore store = new NewsStore();
+        store.addTheme("empty");
+        store.addNews("news", "Only", "text");
+
+        assertTrue(store.newest("news", 1, 20).articles().isEmpty());
+        assertTrue(store.newest("news", 1000, 20).articles().isEmpty());
+        assertTrue(store.newest("empty", 0, 20).articles().isEmpty());
+        assertEquals(0, store.newest("empty", 0, 20).total());
+        assertNull(store.newest("missing", 0, 20));
+        assertEquals(Set.of("empty", "news"), Set.copyOf(store.themes()));
+    }
+
+    @Test
+    void concurrentWritersGetUniqueIdsInThemeOrder() throws Exception {
+        NewsStore store = new NewsStore();
+        int writers = 4;
+        int perWriter = 5000;
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int id = writer;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        store.addNews("theme" + (i % 3), "w" + id + "-" + i, "text");
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+
+        assertEquals(writers * perWriter, store.size());
+        Set<Long> ids = new HashSet<>();
+        for (String theme : store.themes()) {
+            NewsStore.Page page = store.newest(theme, 0, Integer.MAX_VALUE);
+            long previous = Long.MAX_VALUE;
+            for (NewsStore.Article article : page.articles()) {
+                assertTrue(article.id() < previous, "theme " + theme + " is not newest first");
+                previous = article.id();
+                assertTrue(ids.add(article.id()));
+                assertEquals(article, store.get(article.id()));
+            }
+        }
+        assertEquals(writers * perWriter, ids.size());
+    }
+}
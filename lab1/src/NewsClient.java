@@ -2,16 +2,49 @@ import java.io.*;
 import java.net.*;
 import java.util.Scanner;
 
+import org.example.common.NewsProtocol;
+
 public class NewsClient {
     private static final String SERVER_IP = "127.0.0.1";
     private static final int PORT = 12345;
 
     public static void main(String[] args) {
+        Scanner scanner = new Scanner(System.in);
+        if (!System.getProperty("news.protocol", "binary").equals("object") && runBinary(scanner)) {
+            return;
+        }
+        runSerialized(scanner);
+    }
+
+    // returns false when the server only speaks Java serialization, so the caller can reconnect with it
+    private static boolean runBinary(Scanner scanner) {
+        try (Socket socket = new Socket(SERVER_IP, PORT)) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            if (!NewsProtocol.clientHello(in, out)) {
+                return false;
+            }
+            System.out.println("Connected to News Server.");
+
+            while (true) {
+                System.out.print("Enter request (help for requests): ");
+                String request = scanner.nextLine();
+                NewsProtocol.writeRequest(out, NewsProtocol.parse(request));
+
+                String response = NewsProtocol.readResponse(in);
+                System.out.println(response);
+            }
+        } catch (IOException e) {
+            System.out.println("Server disconnected.");
+        }
+        return true;
+    }
+
+    private static void runSerialized(Scanner scanner) {
         try (Socket socket = new Socket(SERVER_IP, PORT);
              ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
              ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
 
-            Scanner scanner = new Scanner(System.in);
             System.out.println("Connected to News Server.");
 
             while (true) {
@@ -2,13 +2,20 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.common.ConnectionExecutor;
+import org.example.common.NewsProtocol;
+import org.example.common.NewsStore;
 
 public class NewsServer {
     private static final int PORT = 12345;
-    private static Map<String, Map<String, String>> newsDatabase = new ConcurrentHashMap<>();
+    private static final int pageSize = Integer.getInteger("news.pageSize", 20);
+    private static final int rejectTimeout = Integer.getInteger("news.rejectTimeout", 200);
+    private static final String busyMessage = "Server is busy, try again later.";
+    private static NewsStore newsStore = new NewsStore();
     private static Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
-    private static int clientIdCounter = 1;
-    private static int newsIdCounter = 0;
+    private static AtomicInteger clientIdCounter = new AtomicInteger(1);
 
     public static void main(String[] args) {
         System.out.println("News Server started...");
@@ -17,22 +24,48 @@ public class NewsServer {
 
         new Thread(NewsServer::listenForCommands).start();
 
+        ConnectionExecutor executor = ConnectionExecutor.fromSystemProperties("news");
+        System.out.println("Handler executor: " + executor.describe());
+
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             while (true) {
                 Socket clientSocket = serverSocket.accept();
 
-                String clientId = "cl" + clientIdCounter++;
+                String clientId = "cl" + clientIdCounter.getAndIncrement();
                 ClientHandler clientHandler = new ClientHandler(clientSocket, clientId);
 
                 clients.put(clientId, clientHandler);
 
-                new Thread(clientHandler).start();
+                if (!executor.submit(clientHandler)) {
+                    clients.remove(clientId);
+                    rejectClient(clientSocket);
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // the busy reply goes out in the client's own protocol; this runs on the accept thread, so a client that has not
+    // sent its first bytes within rejectTimeout is closed without one
+    private static void rejectClient(Socket clientSocket) {
+        try (clientSocket) {
+            clientSocket.setSoTimeout(rejectTimeout);
+            InputStream input = new BufferedInputStream(clientSocket.getInputStream());
+            if (NewsProtocol.acceptBinary(input)) {
+                OutputStream output = new BufferedOutputStream(clientSocket.getOutputStream());
+                NewsProtocol.serverHello(output);
+                NewsProtocol.writeResponse(output, busyMessage);
+            } else {
+                ObjectOutputStream out = new ObjectOutputStream(clientSocket.getOutputStream());
+                out.writeObject(busyMessage);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Error rejecting client: " + e.getMessage());
+        }
+    }
+
     public static void disconnectClientById(String clientId) {
         ClientHandler clientHandler = clients.get(clientId);
         if (clientHandler != null) {
@@ -74,23 +107,16 @@ public class NewsServer {
     }
 
     private static void addTheme(String theme) {
-        newsDatabase.putIfAbsent(theme, new ConcurrentHashMap<>());
+        newsStore.addTheme(theme);
     }
 
     private static void addNews(String theme, String name, String text) {
-        String newsId = generateNewsId();
-        newsDatabase.computeIfAbsent(theme, k -> new ConcurrentHashMap<>()).put(newsId, name + ": " + text);
-    }
-
-    private static synchronized String generateNewsId() {
-        return String.valueOf(newsIdCounter++);
+        newsStore.addNews(theme, name, text);
     }
 
     static class ClientHandler implements Runnable {
         private Socket socket;
         private String clientId;
-        private ObjectOutputStream out;
-        private ObjectInputStream in;
 
         ClientHandler(Socket socket, String clientId) {
             this.socket = socket;
@@ -100,99 +126,122 @@ public class NewsServer {
         @Override
         public void run() {
             try {
-                out = new ObjectOutputStream(socket.getOutputStream());
-                in = new ObjectInputStream(socket.getInputStream());
-
-                System.out.println("Client " + clientId + " connected from " + socket.getInetAddress());
-
-                while (true) {
-                    String request = (String) in.readObject();
-                    String response = handleRequest(request);
-                    out.writeObject(response);
+                // the first bytes tell the two protocols apart: a binary hello, or a Java serialization stream header
+                InputStream input = new BufferedInputStream(socket.getInputStream());
+                if (NewsProtocol.acceptBinary(input)) {
+                    OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+                    NewsProtocol.serverHello(output);
+                    System.out.println("Client " + clientId + " connected from " + socket.getInetAddress() + " (binary)");
+                    serveBinary(input, output);
+                } else {
+                    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+                    ObjectInputStream in = new ObjectInputStream(input);
+                    System.out.println("Client " + clientId + " connected from " + socket.getInetAddress());
+                    serveSerialized(in, out);
                 }
             } catch (IOException | ClassNotFoundException e) {
                 System.out.println("Client " + clientId + " disconnected.");
+            } finally {
+                clients.remove(clientId);
+                disconnect();
             }
         }
 
-        private String handleRequest(String request) {
-            String[] parts = request.split(" ", 2);
-
-            if (request.equals("exit")) {
-                try {
-                    socket.close();
-                    return "Disconnected from server.";
-                } catch (IOException e) {
-                    return "Error while disconnecting.";
-                }
-            }
-
-            if (request.equals("help")) {
-                return """
-                        
-                        Available requests:
-                        help - get list of available requests
-                        exit - disconnect
-                        themes - get list of all themes
-                        newsbytheme [Theme] - get list of news by theme
-                        newstext [ID] - get text of news by ID
-                        addtheme [Theme] - add new theme
-                        addnews [Theme] [Name] [Text] - add news by entering theme, name and text
-                        """;
+        private void serveBinary(InputStream input, OutputStream output) throws IOException {
+            while (true) {
+                NewsProtocol.Request request = NewsProtocol.readRequest(input);
+                NewsProtocol.writeResponse(output, handleRequest(request));
             }
+        }
 
-            if (request.equals("themes")) {
-                return String.join("\n", newsDatabase.keySet());
+        private void serveSerialized(ObjectInputStream in, ObjectOutputStream out) throws IOException, ClassNotFoundException {
+            while (true) {
+                String request = (String) in.readObject();
+                String response = handleRequest(request);
+                out.writeObject(response);
             }
+        }
 
-            if (parts[0].equals("newsbytheme") && parts.length > 1) {
-                String theme = parts[1].trim();
-                Map<String, String> newsMap = newsDatabase.get(theme);
+        private String handleRequest(String request) {
+            return handleRequest(NewsProtocol.parse(request));
+        }
 
-                if (newsMap == null) {
-                    return "No news for this theme";
-                }
+        private String handleRequest(NewsProtocol.Request request) {
+            switch (request.opcode()) {
+                case NewsProtocol.EXIT:
+                    try {
+                        socket.close();
+                        return "Disconnected from server.";
+                    } catch (IOException e) {
+                        return "Error while disconnecting.";
+                    }
+                case NewsProtocol.HELP:
+                    return """
+                            
+                            Available requests:
+                            help - get list of available requests
+                            exit - disconnect
+                            themes - get list of all themes
+                            newsbytheme [Theme] [--page N] - get list of news by theme, newest first
+                            newstext [ID] - get text of news by ID
+                            addtheme [Theme] - add new theme
+                            addnews [Theme] [Name] [Text] - add news by entering theme, name and text
+                            """;
+                case NewsProtocol.THEMES:
+                    return String.join("\n", newsStore.themes());
+                case NewsProtocol.NEWS_BY_THEME:
+                    return getNewsByTheme(request);
+                case NewsProtocol.NEWS_TEXT:
+                    return getNewsTextById(request.arg(0));
+                case NewsProtocol.ADD_THEME:
+                    addTheme(request.arg(0));
+                    return "Theme added: " + request.arg(0);
+                case NewsProtocol.ADD_NEWS:
+                    if (request.args().size() < 3) {
+                        return "Error: Provide theme, name, and text for the news.";
+                    }
+                    addNews(request.arg(0), request.arg(1), request.arg(2));
+                    return "News added under theme: " + request.arg(0);
+                default:
+                    return "No requests with such name: " + (request.args().isEmpty() ? "" : request.arg(0));
+            }
+        }
 
-                StringBuilder response = new StringBuilder();
-                for (Map.Entry<String, String> entry : newsMap.entrySet()) {
-                    response.append("id").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        private String getNewsByTheme(NewsProtocol.Request request) {
+            String theme = request.arg(0);
+            int page = 1;
+            if (request.args().size() > 1) {
+                try {
+                    page = Math.max(Integer.parseInt(request.arg(1)), 1);
+                } catch (NumberFormatException e) {
+                    return "Invalid page: " + request.arg(1);
                 }
-                return response.toString();
             }
+            NewsStore.Page news = newsStore.newest(theme, (int) Math.min((long) (page - 1) * pageSize, Integer.MAX_VALUE), pageSize);
 
-            if (parts[0].equals("newstext") && parts.length > 1) {
-                String id = parts[1].trim();
-                return getNewsTextById(id);
+            if (news == null) {
+                return "No news for this theme";
             }
 
-            if (parts[0].equals("addtheme") && parts.length > 1) {
-                String theme = parts[1].trim();
-                addTheme(theme);
-                return "Theme added: " + theme;
+            StringBuilder response = new StringBuilder();
+            for (NewsStore.Article article : news.articles()) {
+                response.append("id").append(article.id()).append(": ").append(article).append("\n");
             }
-
-            if (parts[0].equals("addnews") && parts.length > 1) {
-                String[] newsParts = parts[1].split(" ", 3);
-                if (newsParts.length < 3) {
-                    return "Error: Provide theme, name, and text for the news.";
-                }
-                String theme = newsParts[0].trim();
-                String name = newsParts[1].trim();
-                String text = newsParts[2].trim();
-                addNews(theme, name, text);
-                return "News added under theme: " + theme;
+            if (news.hasMore()) {
+                response.append("Page ").append(page).append(" of ").append((news.total() + pageSize - 1) / pageSize)
+                        .append(", next: newsbytheme ").append(theme).append(" --page ").append(page + 1).append("\n");
             }
-
-            return "No requests with such name: " + request;
+            return response.toString();
         }
 
         private String getNewsTextById(String id) {
-            for (Map.Entry<String, Map<String, String>> entry : newsDatabase.entrySet()) {
-                if (entry.getValue().containsKey(id)) {
-                    return entry.getValue().get(id);
-                }
+            NewsStore.Article article = null;
+            try {
+                article = newsStore.get(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                // not an ID this server could have issued
             }
-            return "News not found for ID: " + id;
+            return article != null ? article.toString() : "News not found for ID: " + id;
         }
 
         public void disconnect() {
@@ -0,0 +1,305 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CrawlOutputWriter implements Crawler.PageHandler, AutoCloseable {
+    private record Page(String url, int depth, Set<String> links) {
+    }
+
+    private static final Page endOfOutput = new Page("", 0, Set.of());
+    private static final int batchSize = 1024;
+    private static final int bufferBytes = 256 * 1024;
+    private static final int indexRecordBytes = 16;
+
+    private final Path directory;
+    private final boolean perPageFiles;
+    private final long segmentBytes;
+    private final BlockingQueue<Page> queue;
+    private final Thread writer;
+    private final AtomicLong pagesWritten = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private volatile IOException failure;
+
+    private FileChannel segment;
+    private FileChannel index;
+    private long segmentPosition;
+    private int nextSegment;
+
+    // pages are queued by the crawl workers and appended by one thread to rolling newline-delimited JSON segments;
+    // each segment has an index of (URL fingerprint, offset) pairs so a single page can be found without a scan
+    public CrawlOutputWriter(Path directory, boolean perPageFiles, long segmentBytes, int queueCapacity) throws IOException {
+        this.directory = directory;
+        this.perPageFiles = perPageFiles;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        if (perPageFiles) {
+            queue = null;
+            writer = null;
+            return;
+        }
+
+        nextSegment = lastSegmentNumber(directory) + 1;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::writeLoop, "crawl-output-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static CrawlOutputWriter fromSystemProperties(Path directory) throws IOException {
+        return new CrawlOutputWriter(directory, System.getProperty("crawler.outputFormat", "segments").equals("files"),
+                Long.getLong("crawler.outputSegmentBytes", 64L * 1024 * 1024),
+                Integer.getInteger("crawler.outputQueueSize", 16 * 1024));
+    }
+
+    @Override
+    public void handle(String url, int depth, Set<String> links) throws IOException {
+        if (failure != null) {
+            throw new IOException("Crawl output failed", failure);
+        }
+        if (perPageFiles) {
+            writePageFile(url, depth, links);
+            pagesWritten.incrementAndGet();
+            return;
+        }
+        try {
+            // a full queue blocks the crawl workers instead of letting unwritten pages pile up in memory
+            queue.put(new Page(url, depth, links));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing crawl output");
+        }
+    }
+
+    public long getPagesWritten() {
+        return pagesWritten.get();
+    }
+
+    public String getStats() {
+        return "pages=" + pagesWritten.get() + (perPageFiles ? " files" : " segments=" + segments.get()
+                + " queued=" + queue.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            try {
+                queue.put(endOfOutput);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing crawl output");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public static String findPage(Path directory, String url) throws IOException {
+        long fingerprint = UrlSeenSet.fingerprint(url);
+        for (int number = lastSegmentNumber(directory); number > 0; number--) {
+            Path indexFile = directory.resolve(segmentName(number, ".idx"));
+            if (!Files.exists(indexFile)) {
+                continue;
+            }
+            ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            while (entries.remaining() >= indexRecordBytes) {
+                long candidate = entries.getLong();
+                long offset = entries.getLong();
+                if (candidate != fingerprint) {
+                    continue;
+                }
+                try (RandomAccessFile file = new RandomAccessFile(directory.resolve(segmentName(number, ".ndjson")).toFile(), "r")) {
+                    file.seek(offset);
+                    String line = file.readLine();
+                    if (line != null && line.startsWith("{\"url\":" + quote(url) + ",")) {
+                        return line;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeLoop() {
+        List<Page> batch = new ArrayList<>(batchSize);
+        StringBuilder text = new StringBuilder(bufferBytes);
+        ByteBuffer offsets = ByteBuffer.allocate(batchSize * indexRecordBytes);
+        boolean finished = false;
+        while (!finished) {
+            try {
+                Page first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                long position = -1;
+                for (Page page : batch) {
+                    if (page == endOfOutput) {
+                        finished = true;
+                        break;
+                    }
+                    if (failure != null) {
+                        // keep draining so blocked workers and close() are never stuck behind a dead writer
+                        continue;
+                    }
+                    if (position < 0) {
+                        if (segment == null || segmentPosition >= segmentBytes) {
+                            closeSegment();
+                            openSegment();
+                        }
+                        position = segmentPosition;
+                    }
+                    offsets.putLong(UrlSeenSet.fingerprint(page.url())).putLong(position);
+                    int start = text.length();
+                    appendJson(text, page);
+                    // ASCII-only JSON keeps character counts equal to byte counts, so offsets need no encoding pass
+                    position += text.length() - start;
+                }
+                if (text.length() > 0) {
+                    write(text, offsets, offsets.position() / indexRecordBytes);
+                }
+            } catch (IOException e) {
+                failure = e;
+                System.out.println("Error while writing crawl output: " + e.getMessage());
+            } catch (InterruptedException e) {
+                finished = true;
+            } finally {
+                batch.clear();
+                text.setLength(0);
+                offsets.clear();
+            }
+        }
+
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void write(StringBuilder text, ByteBuffer offsets, int pages) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+        segmentPosition += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            segment.write(bytes);
+        }
+        offsets.flip();
+        while (offsets.hasRemaining()) {
+            index.write(offsets);
+        }
+        pagesWritten.addAndGet(pages);
+    }
+
+    private void openSegment() throws IOException {
+        int number = nextSegment++;
+        segment = FileChannel.open(directory.resolve(segmentName(number, ".ndjson")),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        index = FileChannel.open(directory.resolve(segmentName(number, ".idx")),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        segmentPosition = 0;
+        segments.incrementAndGet();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.force(false);
+        segment.close();
+        index.close();
+        segment = null;
+        index = null;
+    }
+
+    private static void appendJson(StringBuilder text, Page page) {
+        text.append("{\"url\":");
+        appendString(text, page.url());
+        text.append(",\"depth\":").append(page.depth()).append(",\"links\":[");
+        boolean first = true;
+        for (String link : page.links()) {
+            if (!first) {
+                text.append(',');
+            }
+            appendString(text, link);
+            first = false;
+        }
+        text.append("]}\n");
+    }
+
+    private static String quote(String value) {
+        StringBuilder text = new StringBuilder(value.length() + 2);
+        appendString(text, value);
+        return text.toString();
+    }
+
+    // non-ASCII characters are written as \\u escapes so every record is plain ASCII
+    private static void appendString(StringBuilder text, String value) {
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    private void writePageFile(String url, int depth, Set<String> links) throws IOException {
+        Path levelDir = directory.resolve(depth == 0 ? "main" : "nesting");
+        Files.createDirectories(levelDir);
+        Path outputFile = levelDir.resolve(url.replaceAll("[^a-zA-Z0-9]", "_") + ".txt");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFile)) {
+            for (String link : links) {
+                writer.write(link);
+                writer.newLine();
+            }
+        }
+        System.out.println("Links copied to " + outputFile.toAbsolutePath());
+    }
+
+    private static String segmentName(int number, String extension) {
+        return String.format("crawl-%05d%s", number, extension);
+    }
+
+    private static int lastSegmentNumber(Path directory) throws IOException {
+        int last = 0;
+        if (!Files.isDirectory(directory)) {
+            return last;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "crawl-*.ndjson")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(last, Integer.parseInt(name.substring(6, name.length() - 7)));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return last;
+    }
+}
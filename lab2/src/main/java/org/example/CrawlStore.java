@@ -0,0 +1,218 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+public final class CrawlStore implements AutoCloseable {
+    public record Entry(String etag, String lastModified, long contentHash, long fetchedAt, Set<String> links) {
+    }
+
+    private static final byte pageRecord = 1;
+    private static final byte crawlStartRecord = 2;
+    private static final byte crawlEndRecord = 3;
+    private static final int recordHeaderBytes = 8;
+    private static final int maxRecordBytes = 64 * 1024 * 1024;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private long records;
+    private volatile long resumeFrom = Long.MAX_VALUE;
+
+    // an append-only log of CRC-framed records; the last record for a URL wins, and a torn tail is cut off on open
+    public CrawlStore(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        long validBytes = Files.exists(file) ? load() : 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > validBytes) {
+            System.out.println("Crawl store " + file + ": discarding " + (channel.size() - validBytes) + " bytes of torn records");
+            channel.truncate(validBytes);
+        }
+        channel.position(validBytes);
+        compactIfBloated();
+    }
+
+    public static CrawlStore fromSystemProperties() throws IOException {
+        String file = System.getProperty("crawler.stateFile", "crawl-state.log");
+        return file.isEmpty() ? null : new CrawlStore(Paths.get(file));
+    }
+
+    public Entry get(String url) {
+        return entries.get(url);
+    }
+
+    // pages fetched by a crawl that never finished are trusted as-is when that crawl is resumed
+    public boolean isFresh(Entry entry) {
+        return entry.fetchedAt() >= resumeFrom;
+    }
+
+    public boolean isResuming() {
+        return resumeFrom != Long.MAX_VALUE;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized void put(String url, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(pageRecord);
+        output.writeUTF(url);
+        output.writeUTF(entry.etag() == null ? "" : entry.etag());
+        output.writeUTF(entry.lastModified() == null ? "" : entry.lastModified());
+        output.writeLong(entry.contentHash());
+        output.writeLong(entry.fetchedAt());
+        output.writeInt(entry.links().size());
+        for (String link : entry.links()) {
+            output.writeUTF(link);
+        }
+        append(bytes.toByteArray());
+        entries.put(url, entry);
+    }
+
+    public synchronized long beginCrawl() throws IOException {
+        // a crawl that resumes an interrupted one keeps its start time, so the pages it already fetched stay fresh
+        long start = isResuming() ? resumeFrom : System.currentTimeMillis();
+        append(marker(crawlStartRecord, start));
+        resumeFrom = start;
+        return start;
+    }
+
+    public synchronized void finishCrawl() throws IOException {
+        append(marker(crawlEndRecord, System.currentTimeMillis()));
+        channel.force(false);
+        resumeFrom = Long.MAX_VALUE;
+        // every re-crawl appends a full set of page records, so a long-running session compacts between crawls
+        compactIfBloated();
+    }
+
+    public synchronized void compact() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Entry> live = Map.copyOf(entries);
+        long resume = resumeFrom;
+        channel.close();
+        channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        records = 0;
+        if (resume != Long.MAX_VALUE) {
+            append(marker(crawlStartRecord, resume));
+        }
+        for (Map.Entry<String, Entry> entry : live.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    private void compactIfBloated() throws IOException {
+        if (records > 2L * entries.size() + 1024) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    public String getStats() {
+        return "pages=" + entries.size() + " records=" + records + (isResuming() ? " resuming" : "");
+    }
+
+    private long load() throws IOException {
+        long validBytes = 0;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream input = new DataInputStream(stream);
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if (length <= 0 || length > maxRecordBytes) {
+                        break;
+                    }
+                    payload = input.readNBytes(length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if (payload.length != length || (int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                validBytes += recordHeaderBytes + length;
+                records++;
+            }
+        }
+        return validBytes;
+    }
+
+    private void apply(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        if (type == crawlStartRecord) {
+            resumeFrom = input.readLong();
+        } else if (type == crawlEndRecord) {
+            resumeFrom = Long.MAX_VALUE;
+        } else if (type == pageRecord) {
+            String url = input.readUTF();
+            String etag = input.readUTF();
+            String lastModified = input.readUTF();
+            long contentHash = input.readLong();
+            long fetchedAt = input.readLong();
+            int linkCount = input.readInt();
+            Set<String> links = new LinkedHashSet<>(Math.max(16, linkCount * 2));
+            for (int i = 0; i < linkCount; i++) {
+                links.add(input.readUTF());
+            }
+            entries.put(url, new Entry(etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified,
+                    contentHash, fetchedAt, Collections.unmodifiableSet(links)));
+        }
+    }
+
+    private static byte[] marker(byte type, long time) {
+        return ByteBuffer.allocate(9).put(type).putLong(time).array();
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(recordHeaderBytes + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        records++;
+    }
+}
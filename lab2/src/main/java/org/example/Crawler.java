@@ -0,0 +1,407 @@
+package org.example;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Crawler {
+    public interface PageHandler {
+        void handle(String url, int depth, Set<String> links) throws IOException;
+    }
+
+    public record Result(int pages, int failures, int unchanged, long bytesFetched, long elapsedNanos) {
+        public double pagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : pages / (elapsedNanos / 1e9);
+        }
+    }
+
+    private record Task(String url, int depth) {
+    }
+
+    // put on the frontier when a task finishes, so the dispatcher notices the freed slot without polling
+    private static final Task wakeUp = new Task("", -1);
+
+    private static final int connectTimeout = Integer.getInteger("crawler.connectTimeout", 5000);
+    private static final int readTimeout = Integer.getInteger("crawler.readTimeout", 15000);
+    private static final long idleTimeout = Long.getLong("crawler.idleTimeout", 30000);
+    private static final long maxPageBytes = Long.getLong("crawler.maxPageBytes", 10L * 1024 * 1024);
+    private static final long maxDrainBytes = 64 * 1024;
+    private static final long fnvOffsetBasis = 0xcbf29ce484222325L;
+    private static final long fnvPrime = 0x100000001b3L;
+    private static final boolean streamingExtractor = !System.getProperty("crawler.extractor", "streaming").equals("jsoup");
+
+    private final int maxDepth;
+    private final int maxConcurrency;
+    private final int maxPerHost;
+    private final long politenessDelayMillis;
+    private final PageHandler handler;
+    private final CloseableHttpClient httpClient;
+    private final CrawlStore store;
+
+    private final BlockingQueue<Task> frontier = new LinkedBlockingQueue<>();
+    private UrlSeenSet seen;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    public Crawler(int maxDepth, int maxConcurrency, int maxPerHost, long politenessDelayMillis,
+                   CloseableHttpClient httpClient, PageHandler handler) {
+        this(maxDepth, maxConcurrency, maxPerHost, politenessDelayMillis, httpClient, null, handler);
+    }
+
+    public Crawler(int maxDepth, int maxConcurrency, int maxPerHost, long politenessDelayMillis,
+                   CloseableHttpClient httpClient, CrawlStore store, PageHandler handler) {
+        this.maxDepth = maxDepth;
+        this.maxConcurrency = maxConcurrency;
+        this.maxPerHost = maxPerHost;
+        this.politenessDelayMillis = politenessDelayMillis;
+        this.httpClient = httpClient;
+        this.store = store;
+        this.handler = handler;
+    }
+
+    public static Crawler fromSystemProperties(int maxDepth, CloseableHttpClient httpClient, CrawlStore store,
+                                               PageHandler handler) {
+        return new Crawler(maxDepth, getMaxConcurrency(), getMaxPerHost(),
+                Long.getLong("crawler.politenessDelay", 0), httpClient, store, handler);
+    }
+
+    public static int getMaxConcurrency() {
+        return Integer.getInteger("crawler.maxConcurrency", 16);
+    }
+
+    public static int getMaxPerHost() {
+        return Integer.getInteger("crawler.maxPerHost", 4);
+    }
+
+    public static CloseableHttpClient createHttpClient(int maxConnections, int maxPerHost) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setConnectionRequestTimeout(readTimeout)
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+                .evictExpiredConnections()
+                .build();
+    }
+
+    public Result crawl(String seed) throws InterruptedException, IOException {
+        long start = System.nanoTime();
+        seen = UrlSeenSet.fromSystemProperties();
+        if (store != null) {
+            store.beginCrawl();
+        }
+        enqueue(seed, 0);
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            dispatch(workers);
+        }
+        if (store != null) {
+            store.finishCrawl();
+        }
+        seen.close();
+        return new Result(pages.get(), failures.get(), unchanged.get(), bytesFetched.get(), System.nanoTime() - start);
+    }
+
+    // the frontier is drained by one dispatcher; outstanding counts queued and running tasks, so zero means done.
+    // a task takes one of the maxConcurrency slots only once its host has a free connection and its politeness
+    // delay has passed, so one slow or crowded host cannot tie up the slots every other host is waiting for
+    private void dispatch(ExecutorService workers) throws InterruptedException {
+        Map<Host, ArrayDeque<Task>> waiting = new HashMap<>();
+        ArrayDeque<Host> rotation = new ArrayDeque<>();
+        ArrayDeque<Task> unthrottled = new ArrayDeque<>();
+        while (outstanding.get() > 0) {
+            long pause = startReady(workers, waiting, rotation, unthrottled);
+            Task task = frontier.poll(pause, TimeUnit.MILLISECONDS);
+            for (; task != null; task = frontier.poll()) {
+                if (task == wakeUp) {
+                    continue;
+                }
+                Host host = hostFor(task.url());
+                if (host == null) {
+                    unthrottled.add(task);
+                } else {
+                    ArrayDeque<Task> tasks = waiting.get(host);
+                    if (tasks == null) {
+                        tasks = new ArrayDeque<>();
+                        waiting.put(host, tasks);
+                        rotation.add(host);
+                    }
+                    tasks.add(task);
+                }
+            }
+        }
+    }
+
+    // starts one task per ready host per pass, round robin, and returns how long until a delayed host is ready
+    private long startReady(ExecutorService workers, Map<Host, ArrayDeque<Task>> waiting, ArrayDeque<Host> rotation,
+                            ArrayDeque<Task> unthrottled) {
+        while (!unthrottled.isEmpty() && running.get() < maxConcurrency) {
+            start(workers, unthrottled.poll(), null);
+        }
+        long pause = 50;
+        boolean started = true;
+        while (started && running.get() < maxConcurrency) {
+            started = false;
+            long now = System.currentTimeMillis();
+            for (int i = rotation.size(); i > 0 && running.get() < maxConcurrency; i--) {
+                Host host = rotation.poll();
+                ArrayDeque<Task> tasks = waiting.get(host);
+                long wait = host.nextRequestAt - now;
+                if (wait <= 0 && host.active.get() < maxPerHost) {
+                    host.nextRequestAt = now + politenessDelayMillis;
+                    host.active.incrementAndGet();
+                    start(workers, tasks.poll(), host);
+                    started = true;
+                } else if (wait > 0) {
+                    pause = Math.min(pause, wait);
+                }
+                if (tasks.isEmpty()) {
+                    waiting.remove(host);
+                } else {
+                    rotation.add(host);
+                }
+            }
+        }
+        return pause;
+    }
+
+    private void start(ExecutorService workers, Task task, Host host) {
+        running.incrementAndGet();
+        workers.submit(() -> {
+            try {
+                visit(task);
+            } finally {
+                if (host != null) {
+                    host.active.decrementAndGet();
+                }
+                running.decrementAndGet();
+                outstanding.decrementAndGet();
+                frontier.add(wakeUp);
+            }
+        });
+    }
+
+    // null for a page the store already holds from this crawl, which is answered without touching the network
+    private Host hostFor(String url) {
+        CrawlStore.Entry previous = store == null ? null : store.get(url);
+        if (previous != null && store.isFresh(previous)) {
+            return null;
+        }
+        String hostName;
+        try {
+            hostName = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            hostName = null;
+        }
+        return hosts.computeIfAbsent(hostName == null ? "" : hostName, name -> new Host());
+    }
+
+    private void enqueue(String url, int depth) {
+        // only the canonical spelling is fetched, so trailing slashes, fragments and case variants count once
+        String canonical = UrlCanonicalizer.canonicalize(url);
+        if (canonical != null && seen.add(canonical)) {
+            outstanding.incrementAndGet();
+            frontier.add(new Task(canonical, depth));
+        }
+    }
+
+    private void visit(Task task) {
+        try {
+            Set<String> links = fetch(task.url());
+            handler.handle(task.url(), task.depth(), links);
+            pages.incrementAndGet();
+
+            if (task.depth() < maxDepth) {
+                for (String link : links) {
+                    enqueue(link, task.depth() + 1);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            failures.incrementAndGet();
+            System.out.println("Failed to fetch " + task.url() + ": " + e.getMessage());
+        }
+    }
+
+    private Set<String> fetch(String url) throws IOException {
+        CrawlStore.Entry previous = store == null ? null : store.get(url);
+        if (previous != null && store.isFresh(previous)) {
+            unchanged.incrementAndGet();
+            return previous.links();
+        }
+
+        HttpGet request = new HttpGet(url);
+        if (previous != null && previous.etag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, previous.etag());
+        }
+        if (previous != null && previous.lastModified() != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+        }
+
+        System.out.println("Connecting to " + url + " ...");
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            if (previous != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(response.getEntity());
+                unchanged.incrementAndGet();
+                remember(url, response, previous, previous.contentHash(), previous.links());
+                return previous.links();
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new IOException("No content from server.");
+            }
+            ContentType contentType = ContentType.get(entity);
+            if (contentType != null && !isHtml(contentType.getMimeType())) {
+                bytesFetched.addAndGet(skip(response, entity));
+                remember(url, response, previous, 0, Collections.emptySet());
+                return Collections.emptySet();
+            }
+
+            Charset charset = contentType == null || contentType.getCharset() == null
+                    ? StandardCharsets.UTF_8 : contentType.getCharset();
+            Set<String> links;
+            long contentHash;
+            if (streamingExtractor) {
+                InputStream content = entity.getContent();
+                HashingInputStream body = new HashingInputStream(content);
+                links = LinkExtractor.extract(body, charset, url, maxPageBytes);
+                if (content.read() != -1) {
+                    // the page was cut off at the size cap; aborting drops the connection instead of draining it
+                    System.out.println("Truncated " + url + " at " + maxPageBytes + " bytes");
+                    request.abort();
+                }
+                bytesFetched.addAndGet(body.count);
+                contentHash = body.hash;
+            } else {
+                // reading the entity to the end hands the connection back to the pool for keep-alive reuse
+                byte[] body = EntityUtils.toByteArray(entity);
+                links = WebDownloader.extractLinks(new String(body, charset), url);
+                bytesFetched.addAndGet(body.length);
+                contentHash = hash(fnvOffsetBasis, body, 0, body.length);
+            }
+
+            // an origin that ignores the validators still lets an unchanged page be recognised by its hash
+            if (previous != null && previous.contentHash() == contentHash) {
+                unchanged.incrementAndGet();
+            }
+            remember(url, response, previous, contentHash, links);
+            return links;
+        }
+    }
+
+    private void remember(String url, CloseableHttpResponse response, CrawlStore.Entry previous, long contentHash,
+                          Set<String> links) throws IOException {
+        if (store == null) {
+            return;
+        }
+        // a 304 may omit the validators, in which case the stored ones still apply
+        boolean notModified = response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        store.put(url, new CrawlStore.Entry(
+                etag != null ? etag.getValue() : notModified ? previous.etag() : null,
+                lastModified != null ? lastModified.getValue() : notModified ? previous.lastModified() : null,
+                contentHash, System.currentTimeMillis(), links));
+    }
+
+    private static boolean isHtml(String mimeType) {
+        return mimeType.equalsIgnoreCase("text/html") || mimeType.equalsIgnoreCase("application/xhtml+xml");
+    }
+
+    private static long skip(CloseableHttpResponse response, HttpEntity entity) throws IOException {
+        // a short body is cheaper to drain than a new connection; anything larger is dropped with its connection
+        long length = entity.getContentLength();
+        if (length >= 0 && length <= maxDrainBytes) {
+            EntityUtils.consume(entity);
+            return length;
+        }
+        response.close();
+        return 0;
+    }
+
+    private static long hash(long hash, byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * fnvPrime;
+        }
+        return hash;
+    }
+
+    private static class Host {
+        private final AtomicInteger active = new AtomicInteger();
+        // only the dispatcher reads or writes this
+        private long nextRequestAt;
+    }
+
+    private static class HashingInputStream extends FilterInputStream {
+        private long hash = fnvOffsetBasis;
+        private long count;
+
+        HashingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                hash = (hash ^ b) * fnvPrime;
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                hash = Crawler.hash(hash, buffer, offset, read);
+                count += read;
+            }
+            return read;
+        }
+    }
+}
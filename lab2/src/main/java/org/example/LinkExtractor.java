@@ -0,0 +1,379 @@
+package org.example;
+
+import org.jsoup.parser.Parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+
+public class LinkExtractor {
+    private static final int maxAttributeLength = 8192;
+    private static final String[] rawTextElements = {"script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"};
+    private static final String[] rawTextEnds = new String[rawTextElements.length];
+
+    static {
+        for (int i = 0; i < rawTextElements.length; i++) {
+            rawTextEnds[i] = "</" + rawTextElements[i];
+        }
+    }
+
+    private enum State {
+        DATA, TAG_OPEN, MARKUP, COMMENT, BOGUS, TAG_NAME, BEFORE_ATTRIBUTE_NAME, ATTRIBUTE_NAME, AFTER_ATTRIBUTE_NAME,
+        BEFORE_ATTRIBUTE_VALUE, ATTRIBUTE_VALUE, RAW_TEXT
+    }
+
+    private final Set<String> links = new HashSet<>();
+    private String baseUrl;
+    private boolean baseSeen;
+
+    private State state = State.DATA;
+    private final StringBuilder tagName = new StringBuilder();
+    private final StringBuilder attributeName = new StringBuilder();
+    private final StringBuilder attributeValue = new StringBuilder();
+    private char quote;
+    private boolean endTag;
+    private int dashes;
+    private String href;
+    private String src;
+    private String rel;
+    private String rawTextEnd;
+    private int rawTextMatched;
+
+    private LinkExtractor(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static Set<String> extract(InputStream input, Charset charset, String baseUrl, long maxBytes) throws IOException {
+        return extract(new InputStreamReader(new LimitedInputStream(input, maxBytes), charset), baseUrl);
+    }
+
+    // one pass over the markup, collecting the same links as WebDownloader.extractLinks without building a DOM
+    public static Set<String> extract(Reader reader, String baseUrl) throws IOException {
+        LinkExtractor extractor = new LinkExtractor(baseUrl);
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                extractor.accept(buffer[i]);
+            }
+        }
+        return extractor.links;
+    }
+
+    public static Set<String> extract(String html, String baseUrl) {
+        LinkExtractor extractor = new LinkExtractor(baseUrl);
+        for (int i = 0; i < html.length(); i++) {
+            extractor.accept(html.charAt(i));
+        }
+        return extractor.links;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case DATA:
+                if (c == '<') {
+                    state = State.TAG_OPEN;
+                }
+                break;
+            case TAG_OPEN:
+                if (c == '!') {
+                    state = State.MARKUP;
+                    dashes = 0;
+                } else if (c == '/') {
+                    endTag = true;
+                } else if (isLetter(c)) {
+                    startTag(c);
+                } else if (c == '?') {
+                    state = State.BOGUS;
+                } else {
+                    endTag = false;
+                    state = c == '<' ? State.TAG_OPEN : State.DATA;
+                }
+                break;
+            case MARKUP:
+                if (c == '-' && ++dashes == 2) {
+                    state = State.COMMENT;
+                    dashes = 0;
+                } else if (c != '-') {
+                    state = c == '>' ? State.DATA : State.BOGUS;
+                }
+                break;
+            case COMMENT:
+                if (c == '-') {
+                    dashes++;
+                } else if (c == '>' && dashes >= 2) {
+                    state = State.DATA;
+                } else {
+                    dashes = 0;
+                }
+                break;
+            case BOGUS:
+                if (c == '>') {
+                    state = State.DATA;
+                }
+                break;
+            case TAG_NAME:
+                if (isWhitespace(c)) {
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '/') {
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '>') {
+                    finishTag();
+                } else {
+                    tagName.append(Character.toLowerCase(c));
+                }
+                break;
+            case BEFORE_ATTRIBUTE_NAME:
+                if (c == '>') {
+                    finishTag();
+                } else if (!isWhitespace(c) && c != '/') {
+                    startAttribute(c);
+                }
+                break;
+            case ATTRIBUTE_NAME:
+                if (isWhitespace(c)) {
+                    state = State.AFTER_ATTRIBUTE_NAME;
+                } else if (c == '=') {
+                    state = State.BEFORE_ATTRIBUTE_VALUE;
+                } else if (c == '>') {
+                    finishAttribute();
+                    finishTag();
+                } else if (c == '/') {
+                    finishAttribute();
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else {
+                    attributeName.append(Character.toLowerCase(c));
+                }
+                break;
+            case AFTER_ATTRIBUTE_NAME:
+                if (c == '=') {
+                    state = State.BEFORE_ATTRIBUTE_VALUE;
+                } else if (c == '>') {
+                    finishAttribute();
+                    finishTag();
+                } else if (!isWhitespace(c)) {
+                    finishAttribute();
+                    if (c == '/') {
+                        state = State.BEFORE_ATTRIBUTE_NAME;
+                    } else {
+                        startAttribute(c);
+                    }
+                }
+                break;
+            case BEFORE_ATTRIBUTE_VALUE:
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                    state = State.ATTRIBUTE_VALUE;
+                } else if (c == '>') {
+                    finishAttribute();
+                    finishTag();
+                } else if (!isWhitespace(c)) {
+                    quote = 0;
+                    appendValue(c);
+                    state = State.ATTRIBUTE_VALUE;
+                }
+                break;
+            case ATTRIBUTE_VALUE:
+                if (quote != 0 ? c == quote : isWhitespace(c)) {
+                    finishAttribute();
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else if (quote == 0 && c == '>') {
+                    finishAttribute();
+                    finishTag();
+                } else {
+                    appendValue(c);
+                }
+                break;
+            case RAW_TEXT:
+                if (Character.toLowerCase(c) == rawTextEnd.charAt(rawTextMatched)) {
+                    if (++rawTextMatched == rawTextEnd.length()) {
+                        state = State.BOGUS;
+                    }
+                } else {
+                    rawTextMatched = c == '<' ? 1 : 0;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startTag(char c) {
+        tagName.setLength(0);
+        tagName.append(Character.toLowerCase(c));
+        href = null;
+        src = null;
+        rel = null;
+        state = State.TAG_NAME;
+    }
+
+    private void startAttribute(char c) {
+        attributeName.setLength(0);
+        attributeName.append(Character.toLowerCase(c));
+        attributeValue.setLength(0);
+        state = State.ATTRIBUTE_NAME;
+    }
+
+    private void appendValue(char c) {
+        if (attributeValue.length() < maxAttributeLength) {
+            attributeValue.append(c);
+        }
+    }
+
+    private void finishAttribute() {
+        if (endTag) {
+            return;
+        }
+        // the first occurrence of an attribute wins, as in the HTML parser; names are compared in place to avoid garbage
+        if (href == null && "href".contentEquals(attributeName)) {
+            href = value();
+        } else if (src == null && "src".contentEquals(attributeName)) {
+            src = value();
+        } else if (rel == null && "rel".contentEquals(attributeName)) {
+            rel = value();
+        }
+    }
+
+    private String value() {
+        String value = attributeValue.toString();
+        return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, true);
+    }
+
+    private void finishTag() {
+        state = State.DATA;
+        if (endTag) {
+            endTag = false;
+            return;
+        }
+
+        if (href != null && !baseSeen && "base".contentEquals(tagName)) {
+            baseSeen = true;
+            baseUrl = resolve(baseUrl, href);
+        } else if (href != null && "a".contentEquals(tagName)) {
+            add(href);
+        } else if (href != null && rel != null && "link".contentEquals(tagName)
+                && (rel.trim().equalsIgnoreCase("stylesheet") || rel.trim().equalsIgnoreCase("icon"))) {
+            add(href);
+        }
+        if (src != null) {
+            add(src);
+        }
+
+        for (int i = 0; i < rawTextElements.length; i++) {
+            if (rawTextElements[i].contentEquals(tagName)) {
+                rawTextEnd = rawTextEnds[i];
+                rawTextMatched = 0;
+                state = State.RAW_TEXT;
+                break;
+            }
+        }
+    }
+
+    private void add(String url) {
+        String absolute = resolve(baseUrl, url);
+        if (!absolute.isEmpty()) {
+            links.add(absolute);
+        }
+    }
+
+    // resolves the way jsoup's absUrl does: control characters are dropped, spaces and non-ASCII characters are
+    // tolerated, and a reference that cannot be resolved is kept only if it names its own scheme
+    static String resolve(String base, String reference) {
+        String relative = stripControl(reference);
+        try {
+            URI relativeUri = new URI(UrlCanonicalizer.escapeIllegal(relative));
+            if (relativeUri.isAbsolute()) {
+                return relativeUri.toString();
+            }
+            URI baseUri = new URI(UrlCanonicalizer.escapeIllegal(stripControl(base)));
+            if (!baseUri.isAbsolute() || baseUri.isOpaque()) {
+                return "";
+            }
+            // java.net.URI drops the last path segment for these, and joins "http://host" and "a" into "http://hosta"
+            if (baseUri.getRawPath().isEmpty()) {
+                baseUri = baseUri.resolve("/");
+            }
+            if (relative.isEmpty()) {
+                return baseUri.toString();
+            }
+            if (relative.startsWith("?")) {
+                relativeUri = new URI(UrlCanonicalizer.escapeIllegal(baseUri.getRawPath() + relative));
+            }
+            return baseUri.resolve(relativeUri).toString();
+        } catch (URISyntaxException e) {
+            return hasScheme(relative) ? relative : "";
+        }
+    }
+
+    private static String stripControl(String url) {
+        StringBuilder stripped = new StringBuilder(url.length());
+        for (int i = 0; i < url.length(); i++) {
+            if (url.charAt(i) >= ' ') {
+                stripped.append(url.charAt(i));
+            }
+        }
+        return stripped.toString().trim();
+    }
+
+    private static boolean hasScheme(String url) {
+        int colon = url.indexOf(':');
+        if (colon <= 0 || !isLetter(url.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < colon; i++) {
+            char c = url.charAt(i);
+            if (!isLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream input, long maxBytes) {
+            super(input);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
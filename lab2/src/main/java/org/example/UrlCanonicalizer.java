@@ -0,0 +1,122 @@
+package org.example;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public class UrlCanonicalizer {
+    private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
+
+    // returns the form of an http(s) URL every spelling of it maps to, or null if it cannot be crawled
+    public static String canonicalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(escapeIllegal(url.trim())).normalize();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+
+        String scheme = uri.getScheme();
+        if (scheme == null) {
+            return null;
+        }
+        scheme = scheme.toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        String host = uri.getHost();
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length() + 1).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(host);
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            canonical.append(':').append(port);
+        }
+
+        // normalize() keeps dot segments that climb above the root, which browsers simply drop
+        String path = uri.getRawPath();
+        while (path != null && (path.startsWith("/../") || path.equals("/.."))) {
+            path = path.length() == 3 ? "/" : path.substring(3);
+        }
+        if (path == null || path.isEmpty()) {
+            canonical.append('/');
+        } else {
+            appendNormalizedEscapes(canonical, path);
+        }
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            canonical.append('?');
+            appendNormalizedEscapes(canonical, query);
+        }
+        return canonical.toString();
+    }
+
+    // %7e and %7E both become "~": unreserved characters are decoded and the remaining escapes use upper-case hex
+    private static void appendNormalizedEscapes(StringBuilder target, String component) {
+        for (int i = 0; i < component.length(); i++) {
+            char c = component.charAt(i);
+            if (c == '%' && i + 2 < component.length() && isHex(component.charAt(i + 1)) && isHex(component.charAt(i + 2))) {
+                int value = Character.digit(component.charAt(i + 1), 16) * 16 + Character.digit(component.charAt(i + 2), 16);
+                if (isUnreserved((char) value)) {
+                    target.append((char) value);
+                } else {
+                    target.append('%').append(hexDigits[value >> 4]).append(hexDigits[value & 0xf]);
+                }
+                i += 2;
+            } else {
+                target.append(c);
+            }
+        }
+    }
+
+    // links taken from real pages often carry spaces or non-ASCII characters that java.net.URI refuses
+    static String escapeIllegal(String url) {
+        int i = 0;
+        while (i < url.length() && isAllowed(url.charAt(i))) {
+            i++;
+        }
+        if (i == url.length()) {
+            return url;
+        }
+
+        StringBuilder escaped = new StringBuilder(url.length() + 16).append(url, 0, i);
+        for (; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (isAllowed(c)) {
+                escaped.append(c);
+                continue;
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                escaped.append('%').append(hexDigits[(b >> 4) & 0xf]).append(hexDigits[b & 0xf]);
+            }
+            i = end - 1;
+        }
+        return escaped.toString();
+    }
+
+    private static boolean isAllowed(char c) {
+        return c > ' ' && c < 0x7f && c != '"' && c != '<' && c != '>' && c != '\\' && c != '^' && c != '`'
+                && c != '{' && c != '|' && c != '}';
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -0,0 +1,335 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class UrlSeenSet implements AutoCloseable {
+    private static final int segmentCount = 64;
+    private static final int maxRunsPerSegment = 8;
+    private static final long fnvOffsetBasis = 0xcbf29ce484222325L;
+    private static final long fnvPrime = 0x100000001b3L;
+
+    private final Segment[] segments = new Segment[segmentCount];
+    private final BloomFilter bloom;
+    private final Path spillDirectory;
+    private final int maxSegmentEntries;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong diskLookups = new AtomicLong();
+
+    // 64-bit fingerprints of canonical URLs kept in lock-striped open-addressing tables; with a spill directory
+    // a full stripe is written out as a sorted run, and a Bloom filter keeps most lookups away from the runs
+    public UrlSeenSet(long expectedUrls, long maxInMemory, Path spillDirectory) throws IOException {
+        this.spillDirectory = spillDirectory;
+        this.maxSegmentEntries = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(1024, maxInMemory / segmentCount));
+        this.bloom = spillDirectory == null ? null : new BloomFilter(Math.max(expectedUrls, 1024), 0.01);
+        if (spillDirectory != null) {
+            Files.createDirectories(spillDirectory);
+        }
+        int initialCapacity = (int) Math.min(maxSegmentEntries, Math.max(64, expectedUrls / segmentCount));
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(i, initialCapacity);
+        }
+    }
+
+    public static UrlSeenSet fromSystemProperties() throws IOException {
+        String spill = System.getProperty("crawler.seenSpillDir", "");
+        return new UrlSeenSet(Long.getLong("crawler.expectedUrls", 1_000_000),
+                Long.getLong("crawler.seenMaxInMemory", 16_000_000),
+                spill.isEmpty() ? null : Paths.get(spill));
+    }
+
+    public static long fingerprint(String url) {
+        long hash = fnvOffsetBasis;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            hash = (hash ^ (c & 0xff)) * fnvPrime;
+            hash = (hash ^ (c >>> 8)) * fnvPrime;
+        }
+        // FNV leaves the high bits poorly mixed, and those pick the stripe, so finish with a 64-bit avalanche
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    public boolean add(String url) {
+        return addFingerprint(fingerprint(url));
+    }
+
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        Segment segment = segments[(int) (fingerprint >>> 58)];
+        synchronized (segment) {
+            return segment.contains(fingerprint) || segment.spilled(fingerprint);
+        }
+    }
+
+    public boolean addFingerprint(long fingerprint) {
+        Segment segment = segments[(int) (fingerprint >>> 58)];
+        synchronized (segment) {
+            if (segment.contains(fingerprint)) {
+                return false;
+            }
+            if (segment.spilled(fingerprint)) {
+                return false;
+            }
+            segment.insert(fingerprint);
+            if (bloom != null) {
+                bloom.add(fingerprint);
+            }
+            size.incrementAndGet();
+            if (segment.size >= maxSegmentEntries) {
+                segment.spill();
+            }
+            return true;
+        }
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    public long memoryBytes() {
+        long bytes = bloom == null ? 0 : bloom.bits.length() * 8L;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.table.length * 8L;
+            }
+        }
+        return bytes;
+    }
+
+    public String getStats() {
+        return "urls=" + size.get() + " memoryBytes=" + memoryBytes() + " spilled=" + spilled.get()
+                + " diskLookups=" + diskLookups.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Run run : segment.runs) {
+                    run.delete();
+                }
+                segment.runs.clear();
+            }
+        }
+    }
+
+    private class Segment {
+        private final int id;
+        private long[] table;
+        private int size;
+        private int nextRun;
+        private final List<Run> runs = new ArrayList<>();
+
+        Segment(int id, int expectedEntries) {
+            this.id = id;
+            this.table = new long[tableSize(expectedEntries)];
+        }
+
+        boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                long value = table[slot];
+                if (value == fingerprint) {
+                    return true;
+                }
+                if (value == 0) {
+                    return false;
+                }
+            }
+        }
+
+        void insert(long fingerprint) {
+            if ((size + 1) * 4L > table.length * 3L) {
+                rehash(table.length * 2);
+            }
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = fingerprint;
+            size++;
+        }
+
+        boolean spilled(long fingerprint) {
+            if (runs.isEmpty() || !bloom.mightContain(fingerprint)) {
+                return false;
+            }
+            for (Run run : runs) {
+                diskLookups.incrementAndGet();
+                if (run.contains(fingerprint)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void spill() {
+            if (spillDirectory == null) {
+                return;
+            }
+            long[] sorted = new long[size];
+            int count = 0;
+            for (long value : table) {
+                if (value != 0) {
+                    sorted[count++] = value;
+                }
+            }
+            Arrays.sort(sorted);
+            try {
+                runs.add(Run.write(spillDirectory.resolve("seen-" + id + "-" + nextRun++ + ".run"), sorted));
+                if (runs.size() > maxRunsPerSegment) {
+                    Run merged = Run.merge(spillDirectory.resolve("seen-" + id + "-" + nextRun++ + ".run"), runs);
+                    for (Run run : runs) {
+                        run.delete();
+                    }
+                    runs.clear();
+                    runs.add(merged);
+                }
+            } catch (IOException e) {
+                // without the run the fingerprints must stay in memory, so keep growing instead of losing them
+                System.out.println("Cannot spill seen URLs to " + spillDirectory + ": " + e.getMessage());
+                return;
+            }
+            spilled.addAndGet(size);
+            table = new long[table.length];
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] old = table;
+            table = new long[capacity];
+            size = 0;
+            for (long value : old) {
+                if (value != 0) {
+                    insert(value);
+                }
+            }
+        }
+    }
+
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(entries * 4 / 3, 16) - 1) << 1;
+    }
+
+    private static class Run {
+        private final Path file;
+        private final LongBuffer values;
+
+        private Run(Path file, LongBuffer values) {
+            this.file = file;
+            this.values = values;
+        }
+
+        static Run write(Path file, long[] sorted) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(sorted.length * 8);
+            buffer.asLongBuffer().put(sorted);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return open(file);
+        }
+
+        static Run merge(Path file, List<Run> runs) throws IOException {
+            int total = 0;
+            for (Run run : runs) {
+                total += run.values.limit();
+            }
+            long[] merged = new long[total];
+            int count = 0;
+            for (Run run : runs) {
+                run.values.get(0, merged, count, run.values.limit());
+                count += run.values.limit();
+            }
+            Arrays.sort(merged);
+            return write(file, merged);
+        }
+
+        static Run open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Run(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer());
+            }
+        }
+
+        boolean contains(long fingerprint) {
+            int low = 0;
+            int high = values.limit() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long value = values.get(middle);
+                if (value < fingerprint) {
+                    low = middle + 1;
+                } else if (value > fingerprint) {
+                    high = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashes;
+
+        BloomFilter(long expected, double falsePositiveRate) {
+            long optimal = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (optimal + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        }
+
+        // the fingerprint is already a good hash: its two halves drive double hashing
+        void add(long fingerprint) {
+            long h1 = fingerprint >>> 32;
+            long h2 = fingerprint & 0xffffffffL;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(word);
+                while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    current = bits.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(long fingerprint) {
+            long h1 = fingerprint >>> 32;
+            long h2 = fingerprint & 0xffffffffL;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
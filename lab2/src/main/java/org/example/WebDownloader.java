@@ -1,18 +1,15 @@
 package org.example;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -23,14 +20,16 @@ import java.util.HashSet;
 
 public class WebDownloader {
     private static String webServerName = "https://example.com";
-    private static boolean nestingEnabled = false;
+    private static int maxDepth = 0;
     private static final String outputDir = "output";
-    private static Set<String> visitedUrls = new HashSet<>();
+    private static CloseableHttpClient httpClient;
+    private static CrawlStore crawlStore;
+    private static boolean crawlStoreOpened;
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         System.out.println("Web Server name: " + webServerName);
-        System.out.println("Nesting enabled: " + nestingEnabled);
+        System.out.println("Max depth: " + maxDepth);
         System.out.println("Type /help for list of commands.");
 
         while (true) {
@@ -54,28 +53,33 @@ public class WebDownloader {
                     break;
                 case "/setnesting":
                     if ("true".equalsIgnoreCase(argument)) {
-                        nestingEnabled = true;
+                        maxDepth = 1;
                         System.out.println("Nesting enabled: true (1 level deep)");
                     } else if ("false".equalsIgnoreCase(argument)) {
-                        nestingEnabled = false;
+                        maxDepth = 0;
                         System.out.println("Nesting enabled: false (only main page)");
                     } else {
                         System.out.println("Usage: /setnesting [true/false]");
                     }
                     break;
-                case "/run":
+                case "/setdepth":
                     try {
-                        visitedUrls.clear();
-                        runDownload(webServerName, 0);
-                    } catch (IOException e) {
-                        System.out.println("Error: Unable to connect to the server. Change the web server and try again.");
+                        maxDepth = Math.max(0, Integer.parseInt(argument));
+                        System.out.println("Max depth set to: " + maxDepth);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Usage: /setdepth [levels]");
                     }
                     break;
+                case "/run":
+                    runDownload(webServerName);
+                    break;
                 case "/clean":
                     cleanOutputDirectory();
                     break;
                 case "/exit":
                     System.out.println("Exiting...");
+                    closeHttpClient();
+                    closeCrawlStore();
                     scanner.close();
                     return;
                 default:
@@ -88,97 +92,120 @@ public class WebDownloader {
     private static void printHelp() {
         System.out.println("/setname [web server link] - set the name of the web server");
         System.out.println("/setnesting [true/false] - set whether to include nested pages (true: 1 level deep, false: only main page)");
+        System.out.println("/setdepth [levels] - set how many levels of links to follow (0: only main page)");
         System.out.println("/run - copying the website's links to the output folder");
         System.out.println("/clean - clear the output folder");
         System.out.println("/exit - exit the application");
     }
 
-    private static void runDownload(String url, int currentLevel) throws IOException {
-        if (visitedUrls.contains(url)) {
-            System.out.println("Already visited: " + url);
+    private static void runDownload(String url) {
+        if (httpClient == null) {
+            httpClient = Crawler.createHttpClient(Crawler.getMaxConcurrency(), Crawler.getMaxPerHost());
+        }
+        if (!crawlStoreOpened) {
+            crawlStoreOpened = true;
+            try {
+                crawlStore = CrawlStore.fromSystemProperties();
+                if (crawlStore != null && crawlStore.isResuming()) {
+                    System.out.println("Resuming an interrupted crawl (" + crawlStore.getStats() + ")");
+                }
+            } catch (IOException e) {
+                System.out.println("Crawl state unavailable, fetching everything: " + e.getMessage());
+            }
+        }
+        Crawler.Result result;
+        try (CrawlOutputWriter output = CrawlOutputWriter.fromSystemProperties(Paths.get(outputDir))) {
+            result = Crawler.fromSystemProperties(maxDepth, httpClient, crawlStore, output).crawl(url);
+            System.out.println("Crawl output: " + output.getStats());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Crawl interrupted.");
+            return;
+        } catch (IOException e) {
+            System.out.println("Error while saving the crawl: " + e.getMessage());
             return;
         }
 
-        visitedUrls.add(url);
+        if (result.pages() == 0) {
+            System.out.println("Error: Unable to connect to the server. Change the web server and try again.");
+            return;
+        }
+        System.out.println(String.format(Locale.ROOT, "Crawled %d pages (%d failed, %d unchanged) in %.2f s: %.1f pages/sec, %d bytes fetched",
+                result.pages(), result.failures(), result.unchanged(), result.elapsedNanos() / 1e9, result.pagesPerSecond(),
+                result.bytesFetched()));
+    }
 
-        System.out.println("Connecting to " + url + " ...");
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url);
-            HttpEntity entity = httpClient.execute(request).getEntity();
-            if (entity == null) {
-                throw new IOException("No content from server.");
-            }
-            String htmlContent = EntityUtils.toString(entity);
+    private static void closeHttpClient() {
+        if (httpClient == null) {
+            return;
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            System.out.println("Error while closing the HTTP client: " + e.getMessage());
+        }
+    }
 
-            Document document = Jsoup.parse(htmlContent);
+    private static void closeCrawlStore() {
+        if (crawlStore == null) {
+            return;
+        }
+        try {
+            crawlStore.close();
+        } catch (IOException e) {
+            System.out.println("Error while closing the crawl state: " + e.getMessage());
+        }
+    }
 
-            Set<String> links = new HashSet<>();
+    public static Set<String> extractLinks(String html, String baseUrl) {
+        Document document = Jsoup.parse(html, baseUrl);
 
-            for (Element link : document.select("a[href]")) {
-                String href = link.absUrl("href");
-                if (!href.isEmpty()) {
-                    links.add(href);
-                }
-            }
-            for (Element script : document.select("script[src]")) {
-                String src = script.absUrl("src");
-                if (!src.isEmpty()) {
-                    links.add(src);
-                }
-            }
-            for (Element link : document.select("link[rel=stylesheet], link[rel=icon]")) {
-                String href = link.absUrl("href");
-                if (!href.isEmpty()) {
-                    links.add(href);
-                }
-            }
-            for (Element media : document.select("[src]")) {
-                String src = media.absUrl("src");
-                if (!src.isEmpty()) {
-                    links.add(src);
-                }
-            }
+        Set<String> links = new HashSet<>();
 
-            String folderName = (currentLevel == 0) ? "main" : "nesting";
-            File levelDir = new File(outputDir + "/" + folderName);
-            if (!levelDir.exists()) {
-                levelDir.mkdir();
+        for (Element link : document.select("a[href]")) {
+            String href = link.absUrl("href");
+            if (!href.isEmpty()) {
+                links.add(href);
             }
-
-            String outputFileName = url.replaceAll("[^a-zA-Z0-9]", "_") + ".txt";
-            File outputFile = new File(levelDir + "/" + outputFileName);
-
-            try (FileWriter writer = new FileWriter(outputFile)) {
-                for (String link : links) {
-                    writer.write(link + System.lineSeparator());
-                }
+        }
+        for (Element script : document.select("script[src]")) {
+            String src = script.absUrl("src");
+            if (!src.isEmpty()) {
+                links.add(src);
             }
-
-            System.out.println("Links copied to " + outputFile.getAbsolutePath());
-
-            if (nestingEnabled && currentLevel == 0) {
-                for (String link : links) {
-                    runDownload(link, currentLevel + 1);
-                }
+        }
+        for (Element link : document.select("link[rel=stylesheet], link[rel=icon]")) {
+            String href = link.absUrl("href");
+            if (!href.isEmpty()) {
+                links.add(href);
+            }
+        }
+        for (Element media : document.select("[src]")) {
+            String src = media.absUrl("src");
+            if (!src.isEmpty()) {
+                links.add(src);
             }
         }
+        return links;
     }
 
     private static void cleanOutputDirectory() {
         Path outputPath = Paths.get(outputDir);
         if (Files.exists(outputPath)) {
-            try {
-                if (Files.list(outputPath).findAny().isEmpty()) {
+            try (Stream<Path> entries = Files.list(outputPath)) {
+                if (entries.findAny().isEmpty()) {
                     System.out.println("Output folder is already empty.");
                     return;
                 }
-                Files.walk(outputPath)
-                        .filter(Files::isRegularFile)
+            } catch (IOException e) {
+                System.out.println("Error while cleaning the output folder: " + e.getMessage());
+                return;
+            }
+            try (Stream<Path> files = Files.walk(outputPath)) {
+                files.filter(Files::isRegularFile)
                         .map(Path::toFile)
                         .forEach(File::delete);
 
-                visitedUrls.clear();
-
                 System.out.println("Output folder cleaned.");
             } catch (IOException e) {
                 System.out.println("Error while cleaning the output folder: " + e.getMessage());
@@ -0,0 +1,127 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CrawlStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornTailIsCutOffOnOpen() throws IOException {
+        Path file = directory.resolve("crawl.log");
+        try (CrawlStore store = new CrawlStore(file)) {
+            store.put("http://example.com/a", entry("a"));
+            store.put("http://example.com/b", entry("b"));
+        }
+        long validBytes = Files.size(file);
+        try (CrawlStore store = new CrawlStore(file)) {
+            store.put("http://example.com/c", entry("c"));
+        }
+        // a crash half way through the last write leaves a record whose payload is cut short
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertEquals(validBytes, Files.size(file));
+            assertEquals(2, store.size());
+            assertEquals(entry("b"), store.get("http://example.com/b"));
+            assertNull(store.get("http://example.com/c"));
+            store.put("http://example.com/d", entry("d"));
+        }
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertEquals(3, store.size());
+            assertEquals(entry("d"), store.get("http://example.com/d"));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheLog() throws IOException {
+        Path file = directory.resolve("crawl.log");
+        try (CrawlStore store = new CrawlStore(file)) {
+            store.put("http://example.com/a", entry("a"));
+        }
+        long validBytes = Files.size(file);
+        try (CrawlStore store = new CrawlStore(file)) {
+            store.put("http://example.com/b", entry("b"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x55}), Files.size(file) - 1);
+        }
+
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertEquals(validBytes, Files.size(file));
+            assertEquals(1, store.size());
+            assertNull(store.get("http://example.com/b"));
+        }
+    }
+
+    @Test
+    void interruptedCrawlIsResumedAndFinishedCrawlIsNot() throws IOException {
+        Path file = directory.resolve("crawl.log");
+        long start;
+        try (CrawlStore store = new CrawlStore(file)) {
+            start = store.beginCrawl();
+            store.put("http://example.com/a", entry("a", System.currentTimeMillis()));
+        }
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertTrue(store.isResuming());
+            assertTrue(store.isFresh(store.get("http://example.com/a")));
+            assertEquals(start, store.beginCrawl());
+            store.finishCrawl();
+        }
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertFalse(store.isResuming());
+            assertFalse(store.isFresh(store.get("http://example.com/a")));
+        }
+    }
+
+    @Test
+    void repeatedCrawlsInOneSessionAreCompacted() throws IOException {
+        Path file = directory.resolve("crawl.log");
+        int crawls = 200;
+        long oneCrawlBytes = 0;
+        try (CrawlStore store = new CrawlStore(file)) {
+            for (int crawl = 0; crawl < crawls; crawl++) {
+                store.beginCrawl();
+                for (int page = 0; page < 10; page++) {
+                    store.put("http://example.com/" + page, entry("page" + page));
+                }
+                store.finishCrawl();
+                if (crawl == 0) {
+                    oneCrawlBytes = Files.size(file);
+                }
+            }
+            // without compaction the log would hold every crawl's records
+            assertTrue(Files.size(file) < crawls / 2 * oneCrawlBytes, "log is " + Files.size(file) + " bytes");
+        }
+        try (CrawlStore store = new CrawlStore(file)) {
+            assertEquals(10, store.size());
+            assertFalse(store.isResuming());
+            assertEquals(entry("page7"), store.get("http://example.com/7"));
+        }
+    }
+
+    private static CrawlStore.Entry entry(String name) {
+        return entry(name, 1000L + name.length());
+    }
+
+    private static CrawlStore.Entry entry(String name, long fetchedAt) {
+        return new CrawlStore.Entry("\"" + name + "\"", null, name.hashCode(), fetchedAt,
+                Set.of("http://example.com/" + name + "/child"));
+    }
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+class LinkExtractorTest {
+    private static final String[] bases = {"http://example.com", "http://example.com/a/b.html?x=1#f",
+            "https://example.com/dir/", "http://example.com/a b/c"};
+    private static final String[] references = {"", "#top", "?q=2", "c.html", "../x", "../../../y", "/abs",
+            "//other.org/p", "http://z.com", "HTTP://Z.com/A", "mailto:a@b.c", "javascript:void(0)",
+            " spaced link.html ", "a\tb\nc.html", "ünï.html", "a|b{c}.html", "%41%zz", "http://[bad", "x:y", ".",
+            "./", "..", "?", "#", "a?b#c", "/p?q=a b"};
+
+    private static final String page = """
+            <!DOCTYPE html>
+            <HTML><head>
+            <base href="/site/">
+            <base href="http://ignored.example/">
+            <title>links <a href="not-a-link.html"></title>
+            <LINK REL=stylesheet HREF=style.css>
+            <link rel="icon" href='favicon.ico'>
+            <link rel="preload" href="skipped.js">
+            <script src="app.js?v=1&amp;x=2"></script>
+            <script>document.write('<a href="from-script.html">');</script>
+            </head><body>
+            <!-- <a href="commented.html"> -->
+            <a href="page one.html#part">one</a>
+            <a href = "../up.html">up</a>
+            <a href="https://other.example:443/Path/./to/../page?b=1">other</a>
+            <a href="&#x2F;entity&amp;path">entity</a>
+            <a href="mailto:someone@example.com">mail</a>
+            <a>no href</a>
+            <img src="img/pic.png" alt="<a href=&quot;alt.html&quot;>">
+            <iframe src="frame.html"></iframe>
+            <textarea><a href="in-textarea.html"></textarea>
+            <video src=movie.mp4></video>
+            </body></HTML>
+            """;
+
+    @Test
+    void resolvesReferencesLikeJsoup() {
+        for (String base : bases) {
+            for (String reference : references) {
+                Element anchor = new Element("a").attr("href", reference);
+                anchor.setBaseUri(base);
+                assertEquals(canonical(anchor.absUrl("href")), canonical(LinkExtractor.resolve(base, reference)),
+                        "resolving [" + reference + "] against " + base);
+            }
+        }
+    }
+
+    @Test
+    void extractsTheSameLinksAsJsoup() throws IOException {
+        String base = "http://example.com/section/index.html";
+        Set<String> expected = canonical(WebDownloader.extractLinks(page, base));
+        assertEquals(expected, canonical(LinkExtractor.extract(page, base)));
+
+        byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, canonical(LinkExtractor.extract(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8,
+                base, bytes.length)));
+    }
+
+    // the crawler only ever fetches canonical URLs, so two spellings that canonicalize alike are the same link
+    private static Set<String> canonical(Set<String> links) {
+        Set<String> canonical = new TreeSet<>();
+        for (String link : links) {
+            canonical.add(canonical(link));
+        }
+        canonical.remove("");
+        return canonical;
+    }
+
+    private static String canonical(String link) {
+        String canonical = link.isEmpty() ? null : UrlCanonicalizer.canonicalize(link);
+        return canonical == null ? "" : canonical;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UrlCanonicalizerTest {
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void everySpellingMapsToOneUrl() {
+        String canonical = "https://host.example.com/articles/7/index.html?ref=3";
+        String[] variants = {
+                canonical,
+                "HTTPS://Host.Example.COM:443/articles/7/index.html?ref=3",
+                canonical + "#comments",
+                "https://host.example.com/articles/./7/%69ndex.html?ref=3",
+                "https://host.example.com/articles/x/../7/index.html?ref=3",
+                "https://host.example.com./articles/7/index.html?ref=3",
+                "  https://host.example.com/articles/7/index.html?ref=3 ",
+                "https://host.example.com/../articles/7/index.html?ref=3",
+        };
+        for (String variant : variants) {
+            assertEquals(canonical, UrlCanonicalizer.canonicalize(variant), variant);
+        }
+    }
+
+    @Test
+    void pathsAndEscapesAreNormalized() {
+        assertEquals("http://example.com/", UrlCanonicalizer.canonicalize("http://example.com"));
+        assertEquals("http://example.com/", UrlCanonicalizer.canonicalize("http://example.com:80/.."));
+        assertEquals("http://example.com:8080/", UrlCanonicalizer.canonicalize("http://example.com:8080"));
+        assertEquals("http://example.com/~user/a%2Fb", UrlCanonicalizer.canonicalize("http://example.com/%7euser/a%2fb"));
+        assertEquals("http://example.com/a%20b/%C3%BC?q=%7C", UrlCanonicalizer.canonicalize("http://example.com/a b/ü?q=|"));
+        assertEquals("http://example.com/", UrlCanonicalizer.canonicalize("http://example.com/?"));
+        // the query is part of the page's identity, unlike the fragment
+        assertEquals("http://example.com/p?b=2&a=1", UrlCanonicalizer.canonicalize("http://example.com/p?b=2&a=1#x"));
+    }
+
+    @Test
+    void uncrawlableUrlsAreRejected() {
+        assertNull(UrlCanonicalizer.canonicalize("mailto:someone@example.com"));
+        assertNull(UrlCanonicalizer.canonicalize("javascript:void(0)"));
+        assertNull(UrlCanonicalizer.canonicalize("ftp://example.com/file"));
+        assertNull(UrlCanonicalizer.canonicalize("/relative/path"));
+        assertNull(UrlCanonicalizer.canonicalize("http:///no-host"));
+        assertNull(UrlCanonicalizer.canonicalize("http://[bad"));
+    }
+
+    @Test
+    void seenSetRemembersUrlsAfterSpilling() throws IOException {
+        int urls = 200_000;
+        try (UrlSeenSet seen = new UrlSeenSet(urls, urls / 8, spillDirectory)) {
+            for (int i = 0; i < urls; i++) {
+                assertTrue(seen.add("https://host" + i % 100 + ".example.com/page/" + i), "first add of " + i);
+            }
+            for (int i = 0; i < urls; i += 7) {
+                assertFalse(seen.add("https://host" + i % 100 + ".example.com/page/" + i), "second add of " + i);
+            }
+            assertEquals(urls, seen.size());
+        }
+    }
+}
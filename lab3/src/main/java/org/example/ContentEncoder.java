@@ -0,0 +1,280 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+public class ContentEncoder {
+    private static final long maxBytes = Long.getLong("http.compressionCacheMaxBytes", 16L * 1024 * 1024);
+    private static final int minCompressSize = Integer.getInteger("http.compressionMinSize", 256);
+    private static final int maxCompressSize = Integer.getInteger("http.compressionMaxSize", 8 * 1024 * 1024);
+    private static final String[] preferredEncodings = {"br", "gzip"};
+    private static final Variant unavailable = new Variant(null, null, null, 0, false);
+
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "content-encoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<String> loading = ConcurrentHashMap.newKeySet();
+
+    private static final LinkedHashMap<Path, Variants> variants = new LinkedHashMap<>(64, 0.75f, true);
+    private static long currentBytes;
+
+    private static final AtomicLong identityBytes = new AtomicLong();
+    private static final AtomicLong encodedBytes = new AtomicLong();
+    private static final AtomicLong compressions = new AtomicLong();
+    private static final AtomicLong compressionNanos = new AtomicLong();
+
+    public static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/")
+                || contentType.equals("application/javascript")
+                || contentType.equals("application/json")
+                || contentType.equals("application/xml")
+                || contentType.equals("image/svg+xml");
+    }
+
+    public static List<String> acceptableEncodings(HTTPRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding == null ? List.of() : acceptableEncodings(parseAcceptEncoding(acceptEncoding));
+    }
+
+    // an event loop must neither stat siblings nor compress, so with mayBlock false only variants already known are
+    // served; the rest are prepared on a background thread and the client gets the identity body meanwhile
+    public static Variant negotiate(List<String> encodings, Path file, FileCache.Entry cached, String contentType,
+                                    String etag, long size, boolean mayBlock) throws IOException {
+        for (String encoding : encodings) {
+            Variant variant = lookup(file, etag, encoding);
+            if (variant == null && !mayBlock) {
+                loadInBackground(file, cached, contentType, etag, size, encoding);
+                continue;
+            }
+            if (variant == null) {
+                variant = load(file, cached, contentType, etag, size, encoding);
+                store(file, etag, encoding, variant);
+            }
+            if (variant != unavailable) {
+                identityBytes.addAndGet(size);
+                encodedBytes.addAndGet(variant.length());
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    // the variant negotiate would serve without blocking, with no side effects
+    public static Variant peek(List<String> encodings, Path file, String etag) {
+        for (String encoding : encodings) {
+            Variant variant = lookup(file, etag, encoding);
+            if (variant != null && variant != unavailable) {
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    public static String variantEtag(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    public static void invalidate(Path changed) {
+        String changedName = changed.toString();
+        synchronized (variants) {
+            Iterator<Map.Entry<Path, Variants>> iterator = variants.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Variants> entry = iterator.next();
+                if (entry.getKey().startsWith(changed) || changedName.startsWith(entry.getKey().toString())) {
+                    currentBytes -= entry.getValue().bytes;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (variants) {
+            variants.clear();
+            currentBytes = 0;
+        }
+    }
+
+    public static String getStats() {
+        long compressed = compressions.get();
+        return "identityBytes=" + identityBytes.get() + " encodedBytes=" + encodedBytes.get()
+                + " compressions=" + compressed
+                + " avgCompressMicros=" + (compressed == 0 ? 0 : compressionNanos.get() / compressed / 1000);
+    }
+
+    private static Variant load(Path file, FileCache.Entry cached, String contentType, String etag,
+                                long size, String encoding) throws IOException {
+        Path sibling = file.resolveSibling(file.getFileName() + (encoding.equals("br") ? ".br" : ".gz"));
+        try {
+            FileCache.Entry precompressed = FileCache.get(sibling);
+            if (precompressed != null) {
+                return new Variant(encoding, precompressed.body(), null, precompressed.size(), false);
+            }
+            if (Files.isRegularFile(sibling)) {
+                return new Variant(encoding, null, sibling, Files.size(sibling), false);
+            }
+        } catch (NoSuchFileException e) {
+            // no precompressed sibling, fall through to on-the-fly compression
+        }
+
+        if (!encoding.equals("gzip") || !isCompressible(contentType)
+                || size < minCompressSize || size > maxCompressSize) {
+            return unavailable;
+        }
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) size / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+            if (cached != null) {
+                ByteBuffer body = cached.body();
+                byte[] chunk = new byte[8192];
+                while (body.hasRemaining()) {
+                    int length = Math.min(chunk.length, body.remaining());
+                    body.get(chunk, 0, length);
+                    gzip.write(chunk, 0, length);
+                }
+            } else {
+                Files.copy(file, gzip);
+            }
+        }
+        compressions.incrementAndGet();
+        compressionNanos.addAndGet(System.nanoTime() - start);
+
+        byte[] bytes = compressed.toByteArray();
+        if (bytes.length >= size) {
+            return unavailable;
+        }
+        return new Variant(encoding, ByteBuffer.wrap(bytes), null, bytes.length, true);
+    }
+
+    private static void loadInBackground(Path file, FileCache.Entry cached, String contentType, String etag,
+                                         long size, String encoding) {
+        String key = file + "\n" + etag + "\n" + encoding;
+        if (!loading.add(key)) {
+            return;
+        }
+        compressor.execute(() -> {
+            try {
+                store(file, etag, encoding, load(file, cached, contentType, etag, size, encoding));
+            } catch (IOException e) {
+                // the file changed or went away; the next request looks again
+            } finally {
+                loading.remove(key);
+            }
+        });
+    }
+
+    private static Variant lookup(Path file, String etag, String encoding) {
+        synchronized (variants) {
+            Variants entry = variants.get(file);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.etag.equals(etag)) {
+                variants.remove(file);
+                currentBytes -= entry.bytes;
+                return null;
+            }
+            return entry.byEncoding.get(encoding);
+        }
+    }
+
+    private static void store(Path file, String etag, String encoding, Variant variant) {
+        long heapBytes = variant.generated() ? variant.length() : 0;
+        if (heapBytes > maxBytes) {
+            return;
+        }
+
+        synchronized (variants) {
+            Variants entry = variants.get(file);
+            if (entry == null || !entry.etag.equals(etag)) {
+                if (entry != null) {
+                    currentBytes -= entry.bytes;
+                }
+                entry = new Variants(etag);
+                variants.put(file, entry);
+            }
+            Variant previous = entry.byEncoding.put(encoding, variant);
+            long delta = heapBytes - (previous != null && previous.generated() ? previous.length() : 0);
+            entry.bytes += delta;
+            currentBytes += delta;
+
+            Iterator<Map.Entry<Path, Variants>> iterator = variants.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Variants eldest = iterator.next().getValue();
+                currentBytes -= eldest.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    // highest client q-value first; our own preference only breaks ties
+    private static List<String> acceptableEncodings(Map<String, Double> accepted) {
+        List<String> encodings = new ArrayList<>(preferredEncodings.length);
+        for (String encoding : preferredEncodings) {
+            Double quality = accepted.getOrDefault(encoding, accepted.get("*"));
+            if (quality != null && quality > 0) {
+                encodings.add(encoding);
+            }
+        }
+        encodings.sort(Comparator.comparingDouble((String encoding) -> accepted.getOrDefault(encoding, accepted.get("*")))
+                .reversed());
+        return encodings;
+    }
+
+    private static Map<String, Double> parseAcceptEncoding(String header) {
+        Map<String, Double> accepted = new HashMap<>();
+        for (String token : header.split(",")) {
+            String[] parts = token.trim().split(";");
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            accepted.put(parts[0].trim().toLowerCase(Locale.ROOT), quality);
+        }
+        return accepted;
+    }
+
+    public record Variant(String encoding, ByteBuffer body, Path file, long length, boolean generated) {
+        public ByteBuffer body() {
+            return body == null ? null : body.duplicate();
+        }
+    }
+
+    private static class Variants {
+        private final String etag;
+        private final Map<String, Variant> byEncoding = new HashMap<>();
+        private long bytes;
+
+        Variants(String etag) {
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.example.common.FrequencySketch;
+
+public class FileCache {
+    private static final long maxBytes = Long.getLong("http.cacheMaxBytes", 64L * 1024 * 1024);
+    private static final long maxEntryBytes = Long.getLong("http.cacheMaxEntryBytes", 8L * 1024 * 1024);
+    private static final int mapThreshold = Integer.getInteger("http.mmapThreshold", 64 * 1024);
+    private static final int mapHotThreshold = Integer.getInteger("http.mmapHotThreshold", 3);
+
+    private static final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private static final FrequencySketch sketch = new FrequencySketch(Integer.getInteger("http.cacheExpectedEntries", 4096));
+    private static long currentBytes;
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    public static Entry get(Path file) throws IOException {
+        int frequency;
+        synchronized (entries) {
+            sketch.increment(file);
+            Entry entry = entries.get(file);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            frequency = sketch.frequency(file);
+        }
+        misses.incrementAndGet();
+
+        long loadGeneration = generation.get();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile() || attributes.size() > maxEntryBytes || attributes.size() > maxBytes) {
+            return null;
+        }
+        // large files are only mapped once they are requested often; until then they stream with transferTo
+        if (attributes.size() >= mapThreshold && frequency < mapHotThreshold) {
+            return null;
+        }
+
+        Entry entry = load(file, attributes);
+        synchronized (entries) {
+            if (generation.get() != loadGeneration) {
+                return entry;
+            }
+            Entry previous = entries.remove(file);
+            if (previous != null) {
+                currentBytes -= previous.size;
+            }
+            if (admit(file, entry.size)) {
+                entries.put(file, entry);
+                currentBytes += entry.size;
+            }
+        }
+        return entry;
+    }
+
+    public static void invalidate(Path file) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Entry> cached = iterator.next();
+                if (cached.getKey().startsWith(file)) {
+                    currentBytes -= cached.getValue().size;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+            currentBytes = 0;
+        }
+    }
+
+    public static void watch(Path root) throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        registerTree(root, watchService);
+
+        Thread watcher = new Thread(() -> processEvents(watchService), "file-cache-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static long getCurrentBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    public static String getStats() {
+        return "hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions()
+                + " bytes=" + getCurrentBytes() + "/" + maxBytes;
+    }
+
+    private static Entry load(Path file, BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        ByteBuffer body;
+        if (size >= mapThreshold) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                body = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        } else {
+            body = ByteBuffer.wrap(Files.readAllBytes(file));
+        }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String contentType = HTTPHandler.getContentType(file);
+        String etag = StaticFileHandler.etag(body.remaining(), lastModified);
+        String headers = "Content-Type: " + contentType + "\r\n" +
+                StaticFileHandler.validatorHeaders(etag, lastModified);
+        return new Entry(body, headers.getBytes(StandardCharsets.ISO_8859_1), body.remaining(),
+                contentType, etag, lastModified);
+    }
+
+    // TinyLFU admission: a new file only displaces the least recently used entries if it is requested more often
+    private static boolean admit(Path file, long size) {
+        long excess = currentBytes + size - maxBytes;
+        if (excess <= 0) {
+            return true;
+        }
+
+        int candidateFrequency = sketch.frequency(file);
+        List<Path> victims = new ArrayList<>();
+        long freed = 0;
+        for (Map.Entry<Path, Entry> cached : entries.entrySet()) {
+            if (freed >= excess) {
+                break;
+            }
+            if (sketch.frequency(cached.getKey()) > candidateFrequency) {
+                return false;
+            }
+            victims.add(cached.getKey());
+            freed += cached.getValue().size;
+        }
+
+        for (Path victim : victims) {
+            currentBytes -= entries.remove(victim).size;
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    private static void registerTree(Path root, WatchService watchService) throws IOException {
+        try (Stream<Path> directories = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    private static void processEvents(WatchService watchService) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    clear();
+                    ContentEncoder.clear();
+                    continue;
+                }
+
+                Path changed = directory.resolve((Path) event.context());
+                invalidate(changed);
+                ContentEncoder.invalidate(changed);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    try {
+                        registerTree(changed, watchService);
+                    } catch (IOException e) {
+                        System.err.println("Error watching directory " + changed + ": " + e.getMessage());
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    public record Entry(ByteBuffer body, byte[] headers, long size,
+                        String contentType, String etag, long lastModified) {
+        public ByteBuffer body() {
+            return body.duplicate();
+        }
+    }
+}
@@ -2,54 +2,77 @@ package org.example;
 
 import java.io.*;
 import java.net.Socket;
-import java.nio.file.Files;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.example.common.BufferPool;
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+
 public class HTTPHandler implements Runnable {
+    static final int maxHeaderSize = 8192;
+    static final int maxHeaders = 100;
+    static final int maxBodySize = 1024 * 1024;
+    static final BufferPool inputPool = new BufferPool(8192, 1024);
+
     private final Socket clientSocket;
     private final String rootDir;
+    private final int keepAliveTimeout;
+    private final int maxKeepAliveRequests;
 
-    public HTTPHandler(Socket clientSocket, String rootDir) {
+    public HTTPHandler(Socket clientSocket, String rootDir, int keepAliveTimeout, int maxKeepAliveRequests) {
         this.clientSocket = clientSocket;
         this.rootDir = rootDir;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
     }
 
     @Override
     public void run() {
-        try (InputStream input = clientSocket.getInputStream();
-             OutputStream output = clientSocket.getOutputStream();
-             BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
-
-            String requestLine = reader.readLine();
-            if (requestLine != null) {
-                System.out.println("Request: " + requestLine);
+        ByteBuffer buffer = inputPool.acquire();
+        buffer.flip();
+        HttpRequestParser parser = newParser();
 
-                String[] requestParts = requestLine.split(" ");
-                if (requestParts.length < 3) {
-                    sendErrorResponse(output, 400, "Bad Request");
-                    return;
+        try (InputStream input = clientSocket.getInputStream();
+             OutputStream output = new BufferedOutputStream(clientSocket.getOutputStream())) {
+            clientSocket.setSoTimeout(keepAliveTimeout);
+
+            int served = 0;
+            boolean keepAlive = true;
+            while (keepAlive) {
+                HTTPResponse response;
+                try {
+                    if (!readRequest(input, buffer, parser)) {
+                        break;
+                    }
+                    HTTPRequest request = new HTTPRequest(parser);
+                    System.out.println("Request: " + request.getMethod() + " " + request.getUrl() + " " + request.getVersion());
+                    response = process(request, rootDir);
+                    served++;
+                    keepAlive = prepareConnection(request, response, served, maxKeepAliveRequests, keepAliveTimeout);
+                } catch (HttpParseException e) {
+                    response = HTTPResponse.error(e.getStatusCode(), e.getReason());
+                    response.setHeader("Connection", "close");
+                    keepAlive = false;
                 }
 
-                String method = requestParts[0];
-                String url = requestParts[1];
-
-                String filePath = url.equals("/") ? "/index.html" : url;
-                Path file = Paths.get(rootDir, filePath);
-
-                if (method.equals("GET")) {
-                    handleGetRequest(file, output);
-                } else if (method.equals("HEAD")) {
-                    handleHeadRequest(file, output);
-                } else if (method.equals("POST")) {
-                    handlePostRequest(reader, output);
-                } else {
-                    sendErrorResponse(output, 405, "Method Not Allowed");
+                response.writeTo(output, clientSocket.getChannel());
+                parser.reset();
+                if (!keepAlive || !buffer.hasRemaining()) {
+                    output.flush();
                 }
             }
+        } catch (SocketTimeoutException e) {
+            // idle keep-alive connection, nothing more to do
         } catch (IOException e) {
             System.err.println("Client error: " + e.getMessage());
         } finally {
+            parser.reset();
+            inputPool.release(buffer);
             try {
                 clientSocket.close();
             } catch (IOException e) {
@@ -58,74 +81,104 @@ public class HTTPHandler implements Runnable {
         }
     }
 
-    private void handleGetRequest(Path file, OutputStream output) throws IOException {
-        if (Files.exists(file)) {
-            byte[] fileContent = Files.readAllBytes(file);
-            String response = "HTTP/1.1 200 OK\r\n" +
-                    "Content-Type: " + getContentType(file) + "\r\n" +
-                    "Content-Length: " + fileContent.length + "\r\n\r\n";
-            output.write(response.getBytes());
-            output.write(fileContent);
-        } else {
-            sendErrorResponse(output, 404, "Not Found");
+    static HttpRequestParser newParser() {
+        return new HttpRequestParser(maxHeaderSize, maxHeaders, maxBodySize);
+    }
+
+    static boolean readRequest(InputStream input, ByteBuffer buffer, HttpRequestParser parser)
+            throws IOException, HttpParseException {
+        while (!parser.parse(buffer)) {
+            buffer.compact();
+            int bytesRead = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (bytesRead == -1) {
+                buffer.flip();
+                if (parser.isIdle()) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a request");
+            }
+            buffer.position(buffer.position() + bytesRead);
+            buffer.flip();
         }
+        return true;
     }
 
-    private void handleHeadRequest(Path file, OutputStream output) throws IOException {
-        if (Files.exists(file)) {
-            String response = "HTTP/1.1 200 OK\r\n" +
-                    "Content-Type: " + getContentType(file) + "\r\n" +
-                    "Content-Length: " + Files.size(file) + "\r\n\r\n";
-            output.write(response.getBytes());
+    static boolean prepareConnection(HTTPRequest request, HTTPResponse response, int served,
+                                     int maxKeepAliveRequests, int keepAliveTimeout) {
+        boolean keepAlive = request.isKeepAlive() && served < maxKeepAliveRequests;
+        if (keepAlive) {
+            response.setHeader("Connection", "keep-alive");
+            response.setHeader("Keep-Alive", "timeout=" + keepAliveTimeout / 1000 + ", max=" + (maxKeepAliveRequests - served));
         } else {
-            sendErrorResponse(output, 404, "Not Found");
+            response.setHeader("Connection", "close");
         }
+        return keepAlive;
     }
 
-    private void handlePostRequest(BufferedReader reader, OutputStream output) throws IOException {
-        String line;
-        int contentLength = 0;
-        while ((line = reader.readLine()) != null && !line.isEmpty()) {
-            if (line.startsWith("Content-Length")) {
-                contentLength = Integer.parseInt(line.split(":")[1].trim());
-            }
-            System.out.println("Header: " + line);
+    public static HTTPResponse process(HTTPRequest request, String rootDir) throws IOException {
+        return process(request, rootDir, true);
+    }
+
+    // an event loop passes mayBlock false so that slow work such as compression is kept off its thread
+    public static HTTPResponse process(HTTPRequest request, String rootDir, boolean mayBlock) throws IOException {
+        Path file = resolveFile(rootDir, request.getUrl());
+
+        switch (request.getMethod()) {
+            case "GET":
+                return handleGetRequest(request, file, mayBlock);
+            case "HEAD":
+                return handleHeadRequest(request, file, mayBlock);
+            case "POST":
+                return handlePostRequest(request);
+            default:
+                return HTTPResponse.error(405, "Method Not Allowed");
         }
+    }
 
-        if (contentLength > 0) {
-            char[] body = new char[contentLength];
-            int bytesRead = reader.read(body, 0, contentLength);
-            if (bytesRead > 0) {
-                String postData = new String(body);
-                System.out.println("POST data: " + postData);
-
-                String response = "HTTP/1.1 200 OK\r\n" +
-                        "Content-Type: text/html\r\n" +
-                        "Content-Length: 13\r\n" +
-                        "\r\n" +
-                        "POST received";
-                output.write(response.getBytes());
-            }
-        } else {
-            String response = "HTTP/1.1 400 Bad Request\r\n" +
-                    "Content-Type: text/html\r\n" +
-                    "Content-Length: 11\r\n" +
-                    "\r\n" +
-                    "Bad Request";
-            output.write(response.getBytes());
+    static Path resolveFile(String rootDir, String url) {
+        int query = url.indexOf('?');
+        String filePath = query >= 0 ? url.substring(0, query) : url;
+        if (filePath.equals("/")) {
+            filePath = "/index.html";
         }
+
+        Path root = Paths.get(rootDir).toAbsolutePath().normalize();
+        Path file;
+        try {
+            file = root.resolve(filePath.startsWith("/") ? filePath.substring(1) : filePath).normalize();
+        } catch (InvalidPathException e) {
+            // e.g. a NUL byte in the target: no file can have that name
+            return null;
+        }
+        return file.startsWith(root) ? file : null;
     }
 
-    private void sendErrorResponse(OutputStream output, int statusCode, String statusMessage) throws IOException {
-        String response = "HTTP/1.1 " + statusCode + " " + statusMessage + "\r\n" +
-                "Content-Type: text/html\r\n" +
-                "Content-Length: " + statusMessage.length() + "\r\n\r\n" +
-                statusCode + " " + statusMessage;
-        output.write(response.getBytes());
+    private static HTTPResponse handleGetRequest(HTTPRequest request, Path file, boolean mayBlock) throws IOException {
+        return StaticFileHandler.handle(request, file, false, mayBlock);
     }
 
-    private String getContentType(Path file) {
+    private static HTTPResponse handleHeadRequest(HTTPRequest request, Path file, boolean mayBlock) throws IOException {
+        return StaticFileHandler.handle(request, file, true, mayBlock);
+    }
+
+    private static HTTPResponse handlePostRequest(HTTPRequest request) {
+        byte[] body = request.getBody();
+        if (body.length > 0) {
+            System.out.println("POST data: " + new String(body, StandardCharsets.UTF_8));
+
+            HTTPResponse response = new HTTPResponse(200, "OK");
+            response.setHeader("Content-Type", "text/html");
+            response.setBody("POST received".getBytes(StandardCharsets.UTF_8));
+            return response;
+        }
+        return HTTPResponse.error(400, "Bad Request");
+    }
+
+    public static String getContentType(Path file) {
         String fileName = file.toString();
+        if (fileName.endsWith(".download")) {
+            fileName = fileName.substring(0, fileName.length() - ".download".length());
+        }
         if (fileName.endsWith(".html") || fileName.endsWith(".htm")) {
             return "text/html";
         } else if (fileName.endsWith(".css")) {
@@ -146,4 +199,4 @@ public class HTTPHandler implements Runnable {
             return "application/octet-stream";
         }
     }
-}
\ No newline at end of file
+}
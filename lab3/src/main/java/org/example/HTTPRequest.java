@@ -0,0 +1,52 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+import org.example.common.HttpRequestParser;
+
+public class HTTPRequest {
+    private final HttpRequestParser parser;
+    private final String method;
+    private final String url;
+    private final String version;
+    private byte[] body;
+
+    public HTTPRequest(HttpRequestParser parser) {
+        this.parser = parser;
+        this.method = parser.method();
+        this.url = parser.target();
+        this.version = parser.version();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHeader(String name) {
+        return parser.header(name);
+    }
+
+    public byte[] getBody() {
+        if (body == null) {
+            ByteBuffer buffer = parser.body();
+            body = new byte[buffer.remaining()];
+            buffer.get(body);
+        }
+        return body;
+    }
+
+    public boolean isKeepAlive() {
+        if (version.equals("HTTP/1.1")) {
+            return !parser.headerContainsToken("Connection", "close");
+        }
+        return parser.headerContainsToken("Connection", "keep-alive");
+    }
+}
@@ -0,0 +1,193 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HTTPResponse {
+    private final int statusCode;
+    private final String statusMessage;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final List<BodyPart> bodyParts = new ArrayList<>();
+    private byte[] cachedHeaders;
+    private boolean headOnly;
+
+    public HTTPResponse(int statusCode, String statusMessage) {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+    }
+
+    public static HTTPResponse error(int statusCode, String statusMessage) {
+        HTTPResponse response = new HTTPResponse(statusCode, statusMessage);
+        response.setHeader("Content-Type", "text/html");
+        response.setBody((statusCode + " " + statusMessage).getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public void setBody(byte[] body) {
+        setBody(ByteBuffer.wrap(body));
+    }
+
+    public void setBody(ByteBuffer body) {
+        bodyParts.clear();
+        addBodyPart(body);
+    }
+
+    public void setCachedBody(ByteBuffer body, byte[] cachedHeaders) {
+        this.cachedHeaders = cachedHeaders;
+        headers.remove("Content-Type");
+        setBody(body);
+    }
+
+    public void setFileBody(Path file, long offset, long length) {
+        bodyParts.clear();
+        addBodyPart(file, offset, length);
+    }
+
+    public void addBodyPart(ByteBuffer buffer) {
+        bodyParts.add(new BodyPart(buffer, null, 0, buffer.remaining()));
+        updateContentLength();
+    }
+
+    public void addBodyPart(Path file, long offset, long length) {
+        bodyParts.add(new BodyPart(null, file, offset, length));
+        updateContentLength();
+    }
+
+    public long getContentLength() {
+        long length = 0;
+        for (BodyPart part : bodyParts) {
+            length += part.length();
+        }
+        return length;
+    }
+
+    public void setHeadOnly(boolean headOnly) {
+        this.headOnly = headOnly;
+    }
+
+    public byte[] headerBytes() {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append("HTTP/1.1 ").append(statusCode).append(' ').append(statusMessage).append("\r\n");
+        if (cachedHeaders != null) {
+            builder.append(new String(cachedHeaders, StandardCharsets.ISO_8859_1));
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        builder.append("\r\n");
+        return builder.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    public List<BodyPart> toParts() {
+        List<BodyPart> parts = new ArrayList<>(bodyParts.size() + 1);
+        byte[] head = headerBytes();
+        parts.add(new BodyPart(ByteBuffer.wrap(head), null, 0, head.length));
+        if (!headOnly) {
+            for (BodyPart part : bodyParts) {
+                parts.add(part.buffer() != null ? new BodyPart(part.buffer().duplicate(), null, 0, part.length()) : part);
+            }
+        }
+        return parts;
+    }
+
+    public void writeTo(OutputStream output, WritableByteChannel channel) throws IOException {
+        output.write(headerBytes());
+        if (headOnly) {
+            return;
+        }
+
+        for (BodyPart part : bodyParts) {
+            if (part.buffer() != null) {
+                writeBuffer(part.buffer().duplicate(), output, channel);
+            } else if (channel != null) {
+                output.flush();
+                transferFile(part, channel);
+            } else {
+                copyFile(part, output);
+            }
+        }
+    }
+
+    private void updateContentLength() {
+        headers.put("Content-Length", String.valueOf(getContentLength()));
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, OutputStream output, WritableByteChannel channel) throws IOException {
+        if (buffer.hasArray()) {
+            output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else if (channel != null) {
+            output.flush();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } else {
+            byte[] chunk = new byte[8192];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        }
+    }
+
+    private static void transferFile(BodyPart part, WritableByteChannel channel) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(part.file(), StandardOpenOption.READ)) {
+            long position = part.offset();
+            long end = part.offset() + part.length();
+            while (position < end) {
+                long transferred = fileChannel.transferTo(position, end - position, channel);
+                if (transferred == 0 && position >= fileChannel.size()) {
+                    throw new EOFException("File truncated while sending: " + part.file());
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private static void copyFile(BodyPart part, OutputStream output) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(part.file(), StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(8192);
+            long position = part.offset();
+            long end = part.offset() + part.length();
+            while (position < end) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), end - position));
+                int read = fileChannel.read(chunk, position);
+                if (read < 0) {
+                    throw new EOFException("File truncated while sending: " + part.file());
+                }
+                output.write(chunk.array(), 0, read);
+                position += read;
+            }
+        }
+    }
+
+    public record BodyPart(ByteBuffer buffer, Path file, long offset, long length) {
+    }
+}
@@ -1,26 +1,83 @@
 package org.example;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Paths;
+
+import org.example.common.ConnectionExecutor;
 
 public class HTTPServer {
     private static final int PORT = 8080;
     private static final String rootDir = "public";
+    private static final int keepAliveTimeout = Integer.getInteger("http.keepAliveTimeout", 5000);
+    private static final int maxKeepAliveRequests = Integer.getInteger("http.maxKeepAliveRequests", 100);
 
     public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "thread";
+
         System.out.println("Starting HTTP Server...");
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        try {
+            FileCache.watch(Paths.get(rootDir).toAbsolutePath().normalize());
+        } catch (IOException e) {
+            System.err.println("File cache change detection disabled: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("File cache: " + FileCache.getStats());
+            System.out.println("Compression: " + ContentEncoder.getStats());
+        }));
+
+        if (mode.equals("nio")) {
+            runNioServer();
+        } else if (mode.equals("thread")) {
+            runThreadPerConnectionServer();
+        } else {
+            System.err.println("Unknown server mode: " + mode + ". Use 'thread' or 'nio'.");
+        }
+    }
+
+    private static void runThreadPerConnectionServer() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(PORT));
             System.out.println("Server is running on http://localhost:" + PORT);
             System.out.println("Serving files from: " + rootDir);
 
+            ConnectionExecutor executor = ConnectionExecutor.fromSystemProperties("http");
+            System.out.println("Handler executor: " + executor.describe());
+
             while (true) {
-                Socket clientSocket = serverSocket.accept();
+                Socket clientSocket = serverChannel.accept().socket();
                 System.out.println("New connection from: " + clientSocket.getInetAddress());
-                new Thread(new HTTPHandler(clientSocket, rootDir)).start();
+                if (!executor.submit(new HTTPHandler(clientSocket, rootDir, keepAliveTimeout, maxKeepAliveRequests))) {
+                    rejectConnection(clientSocket);
+                }
             }
         } catch (IOException e) {
             System.err.println("Server error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void rejectConnection(Socket clientSocket) {
+        try (clientSocket) {
+            HTTPResponse response = HTTPResponse.error(503, "Service Unavailable");
+            response.setHeader("Retry-After", "1");
+            response.setHeader("Connection", "close");
+            response.writeTo(clientSocket.getOutputStream(), null);
+        } catch (IOException e) {
+            System.err.println("Error rejecting connection: " + e.getMessage());
+        }
+    }
+
+    private static void runNioServer() {
+        int eventLoops = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        try {
+            NioHTTPServer server = new NioHTTPServer(PORT, rootDir, eventLoops, keepAliveTimeout, maxKeepAliveRequests);
+            System.out.println("Server is running on http://localhost:" + PORT + " (nio, " + eventLoops + " event loops)");
+            System.out.println("Serving files from: " + rootDir);
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
+
+public class NioHTTPServer {
+    private static final long idleCheckInterval = 1000;
+
+    private final int port;
+    private final String rootDir;
+    private final int keepAliveTimeout;
+    private final int maxKeepAliveRequests;
+    private final EventLoop[] eventLoops;
+
+    public NioHTTPServer(int port, String rootDir, int eventLoopCount,
+                         int keepAliveTimeout, int maxKeepAliveRequests) throws IOException {
+        this.port = port;
+        this.rootDir = rootDir;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop();
+        }
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            Thread thread = new Thread(eventLoops[i], "nio-event-loop-" + i);
+            thread.start();
+        }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            int next = 0;
+            while (true) {
+                SocketChannel clientChannel = serverChannel.accept();
+                clientChannel.configureBlocking(false);
+                eventLoops[next].register(clientChannel);
+                next = (next + 1) % eventLoops.length;
+            }
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select(idleCheckInterval);
+                    registerPending();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException e) {
+                            close(key);
+                        } catch (RuntimeException e) {
+                            // a bug triggered by one connection must not take down every connection on this loop
+                            System.err.println("Error serving client: " + e);
+                            close(key);
+                        }
+                    }
+
+                    closeIdleConnections();
+                } catch (IOException e) {
+                    System.err.println("Event loop error: " + e.getMessage());
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection());
+                } catch (IOException e) {
+                    System.err.println("Error registering client channel: " + e.getMessage());
+                }
+            }
+        }
+
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < idleCheckInterval) {
+                return;
+            }
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (key.isValid() && connection.output.isEmpty() && now - connection.lastActive > keepAliveTimeout) {
+                    close(key);
+                }
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+
+            int bytesRead = channel.read(connection.input);
+            if (bytesRead == -1) {
+                close(key);
+                return;
+            }
+            connection.lastActive = System.currentTimeMillis();
+            handleBufferedRequest(key, connection);
+        }
+
+        private void handleBufferedRequest(SelectionKey key, Connection connection) throws IOException {
+            HTTPResponse response;
+            try {
+                if (!connection.parse()) {
+                    return;
+                }
+                HTTPRequest request = new HTTPRequest(connection.parser);
+                System.out.println("Request: " + request.getMethod() + " " + request.getUrl() + " " + request.getVersion());
+                response = HTTPHandler.process(request, rootDir, false);
+                connection.served++;
+                connection.keepAlive = HTTPHandler.prepareConnection(request, response, connection.served,
+                        maxKeepAliveRequests, keepAliveTimeout);
+            } catch (HttpParseException e) {
+                response = HTTPResponse.error(e.getStatusCode(), e.getReason());
+                response.setHeader("Connection", "close");
+                connection.keepAlive = false;
+            } catch (RuntimeException e) {
+                System.err.println("Error handling request: " + e);
+                response = HTTPResponse.error(500, "Internal Server Error");
+                response.setHeader("Connection", "close");
+                connection.keepAlive = false;
+            }
+
+            connection.output.addAll(response.toParts());
+            key.interestOps(SelectionKey.OP_WRITE);
+            write(key);
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+
+            while (!connection.output.isEmpty()) {
+                if (!connection.writeNext(channel)) {
+                    return;
+                }
+            }
+
+            connection.lastActive = System.currentTimeMillis();
+            if (!connection.keepAlive) {
+                close(key);
+                return;
+            }
+
+            connection.reset();
+            key.interestOps(SelectionKey.OP_READ);
+            handleBufferedRequest(key, connection);
+        }
+
+        private void close(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            key.cancel();
+            ((Connection) key.attachment()).release();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                System.err.println("Error closing client channel: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Connection {
+        private final ByteBuffer input = HTTPHandler.inputPool.acquire();
+        private final HttpRequestParser parser = HTTPHandler.newParser();
+        private final Deque<HTTPResponse.BodyPart> output = new ArrayDeque<>();
+        private FileChannel file;
+        private long filePosition;
+        private long fileEnd;
+        private int served;
+        private boolean keepAlive;
+        private long lastActive = System.currentTimeMillis();
+
+        boolean parse() throws HttpParseException {
+            input.flip();
+            try {
+                return parser.parse(input);
+            } finally {
+                input.compact();
+            }
+        }
+
+        boolean writeNext(SocketChannel channel) throws IOException {
+            HTTPResponse.BodyPart part = output.peek();
+            if (part.buffer() != null) {
+                ByteBuffer[] buffers = new ByteBuffer[Math.min(output.size(), 16)];
+                int count = 0;
+                for (HTTPResponse.BodyPart next : output) {
+                    if (next.buffer() == null || count == buffers.length) {
+                        break;
+                    }
+                    buffers[count++] = next.buffer();
+                }
+                channel.write(buffers, 0, count);
+                while (!output.isEmpty() && output.peek().buffer() != null && !output.peek().buffer().hasRemaining()) {
+                    output.poll();
+                }
+                return !buffers[count - 1].hasRemaining();
+            }
+
+            if (file == null) {
+                file = FileChannel.open(part.file(), StandardOpenOption.READ);
+                filePosition = part.offset();
+                fileEnd = part.offset() + part.length();
+            }
+            long transferred = file.transferTo(filePosition, fileEnd - filePosition, channel);
+            if (transferred == 0 && filePosition >= file.size()) {
+                throw new EOFException("File truncated while sending: " + part.file());
+            }
+            filePosition += transferred;
+            if (filePosition < fileEnd) {
+                return false;
+            }
+            closeFile();
+            output.poll();
+            return true;
+        }
+
+        void closeFile() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file channel: " + e.getMessage());
+                }
+                file = null;
+            }
+        }
+
+        void reset() {
+            parser.reset();
+            output.clear();
+        }
+
+        void release() {
+            closeFile();
+            parser.reset();
+            HTTPHandler.inputPool.release(input);
+        }
+    }
+}
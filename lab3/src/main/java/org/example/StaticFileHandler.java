@@ -0,0 +1,281 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StaticFileHandler {
+    private static final int maxRanges = 16;
+    private static final DateTimeFormatter httpDate = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    public static HTTPResponse handle(HTTPRequest request, Path file, boolean headOnly, boolean mayBlock)
+            throws IOException {
+        if (file == null) {
+            return HTTPResponse.error(404, "Not Found");
+        }
+
+        FileCache.Entry cached;
+        try {
+            cached = FileCache.get(file);
+        } catch (NoSuchFileException e) {
+            return HTTPResponse.error(404, "Not Found");
+        }
+
+        long size;
+        long lastModified;
+        String contentType;
+        String etag;
+        if (cached != null) {
+            size = cached.size();
+            lastModified = cached.lastModified();
+            contentType = cached.contentType();
+            etag = cached.etag();
+        } else {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return HTTPResponse.error(404, "Not Found");
+            }
+            if (!attributes.isRegularFile()) {
+                return HTTPResponse.error(404, "Not Found");
+            }
+            size = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+            contentType = HTTPHandler.getContentType(file);
+            etag = etag(size, lastModified);
+        }
+
+        String range = request.getHeader("Range");
+        List<String> encodings = range == null || headOnly ? ContentEncoder.acceptableEncodings(request) : List.of();
+
+        // the validators are checked before any variant is built, so a 304 never pays for a compression
+        String notModifiedEtag = notModifiedEtag(request, file, etag, encodings, lastModified);
+        if (notModifiedEtag != null) {
+            HTTPResponse response = new HTTPResponse(304, "Not Modified");
+            response.setHeader("ETag", notModifiedEtag);
+            response.setHeader("Last-Modified", httpDate.format(Instant.ofEpochMilli(lastModified)));
+            if (!notModifiedEtag.equals(etag) || ContentEncoder.isCompressible(contentType)) {
+                response.setHeader("Vary", "Accept-Encoding");
+            }
+            return response;
+        }
+
+        ContentEncoder.Variant variant = null;
+        if (!encodings.isEmpty()) {
+            variant = ContentEncoder.negotiate(encodings, file, cached, contentType, etag, size, mayBlock);
+        }
+        String responseEtag = variant != null ? ContentEncoder.variantEtag(etag, variant.encoding()) : etag;
+        boolean vary = variant != null || ContentEncoder.isCompressible(contentType);
+
+        if (range != null && !headOnly && ifRangeMatches(request.getHeader("If-Range"), etag, lastModified)) {
+            List<long[]> ranges = parseRanges(range, size);
+            if (ranges != null && ranges.isEmpty()) {
+                HTTPResponse response = HTTPResponse.error(416, "Range Not Satisfiable");
+                response.setHeader("Content-Range", "bytes */" + size);
+                return response;
+            }
+            if (ranges != null) {
+                HTTPResponse response = rangeResponse(file, cached, ranges, size, contentType, etag, lastModified);
+                if (vary) {
+                    response.setHeader("Vary", "Accept-Encoding");
+                }
+                return response;
+            }
+        }
+
+        HTTPResponse response = new HTTPResponse(200, "OK");
+        response.setHeadOnly(headOnly);
+        if (variant != null) {
+            response.setHeader("Content-Type", contentType);
+            response.setHeader("Content-Encoding", variant.encoding());
+            response.setHeader("ETag", responseEtag);
+            response.setHeader("Last-Modified", httpDate.format(Instant.ofEpochMilli(lastModified)));
+            response.setHeader("Vary", "Accept-Encoding");
+            if (variant.body() != null) {
+                response.setBody(variant.body());
+            } else {
+                response.setFileBody(variant.file(), 0, variant.length());
+            }
+            return response;
+        }
+        if (vary) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (cached != null) {
+            response.setCachedBody(cached.body(), cached.headers());
+            return response;
+        }
+
+        response.setHeader("Content-Type", contentType);
+        addValidators(response, etag, lastModified);
+        // files FileCache declined are streamed with transferTo rather than copied onto the heap per request
+        response.setFileBody(file, 0, size);
+        return response;
+    }
+
+    static String etag(long size, long lastModified) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+    }
+
+    static String validatorHeaders(String etag, long lastModified) {
+        return "ETag: " + etag + "\r\n" +
+                "Last-Modified: " + httpDate.format(Instant.ofEpochMilli(lastModified)) + "\r\n" +
+                "Accept-Ranges: bytes\r\n";
+    }
+
+    private static void addValidators(HTTPResponse response, String etag, long lastModified) {
+        response.setHeader("ETag", etag);
+        response.setHeader("Last-Modified", httpDate.format(Instant.ofEpochMilli(lastModified)));
+        response.setHeader("Accept-Ranges", "bytes");
+    }
+
+    // the ETag to answer a 304 with, or null if the client's copy is stale
+    private static String notModifiedEtag(HTTPRequest request, Path file, String etag, List<String> encodings,
+                                          long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = stripWeak(candidate.trim());
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return etag;
+                }
+                for (String encoding : encodings) {
+                    if (tag.equals(ContentEncoder.variantEtag(etag, encoding))) {
+                        return tag;
+                    }
+                }
+            }
+            return null;
+        }
+
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            Long since = parseDate(ifModifiedSince);
+            if (since != null && lastModified / 1000 <= since / 1000) {
+                ContentEncoder.Variant variant = ContentEncoder.peek(encodings, file, etag);
+                return variant != null ? ContentEncoder.variantEtag(etag, variant.encoding()) : etag;
+            }
+        }
+        return null;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        Long date = parseDate(ifRange);
+        return date != null && date / 1000 == lastModified / 1000;
+    }
+
+    private static List<long[]> parseRanges(String header, long size) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > maxRanges) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        end = size - 1;
+                    } else {
+                        long last = Long.parseLong(spec.substring(dash + 1));
+                        if (last < start) {
+                            return null;
+                        }
+                        end = Math.min(last, size - 1);
+                    }
+                }
+                if (start < size && start <= end) {
+                    ranges.add(new long[]{start, end});
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private static HTTPResponse rangeResponse(Path file, FileCache.Entry cached, List<long[]> ranges, long size,
+                                              String contentType, String etag, long lastModified) {
+        HTTPResponse response = new HTTPResponse(206, "Partial Content");
+        addValidators(response, etag, lastModified);
+
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setHeader("Content-Type", contentType);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+            addRangePart(response, file, cached, range);
+            return response;
+        }
+
+        String boundary = Long.toHexString(System.nanoTime()) + Long.toHexString(size);
+        response.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        for (long[] range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n";
+            response.addBodyPart(ByteBuffer.wrap(partHeader.getBytes(StandardCharsets.ISO_8859_1)));
+            addRangePart(response, file, cached, range);
+        }
+        response.addBodyPart(ByteBuffer.wrap(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+        return response;
+    }
+
+    private static void addRangePart(HTTPResponse response, Path file, FileCache.Entry cached, long[] range) {
+        long length = range[1] - range[0] + 1;
+        if (cached != null) {
+            response.addBodyPart(cached.body().slice((int) range[0], (int) length));
+        } else {
+            response.addBodyPart(file, range[0], length);
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static Long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
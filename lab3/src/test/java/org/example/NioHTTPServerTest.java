@@ -0,0 +1,68 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NioHTTPServerTest {
+    @TempDir
+    Path root;
+
+    private int port;
+
+    @BeforeEach
+    void start() throws Exception {
+        Files.writeString(root.resolve("index.html"), "<html>hello</html>");
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        // one event loop, so both connections in a test land on the same selector
+        NioHTTPServer server = new NioHTTPServer(port, root.toString(), 1, 5000, 100);
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        for (int attempt = 0; ; attempt++) {
+            try (Socket ignored = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @Test
+    void nulInTheTargetDoesNotStopTheEventLoop() throws IOException {
+        String bad = send("GET /a\0b HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertTrue(bad.startsWith("HTTP/1.1 404") || bad.startsWith("HTTP/1.1 400"), bad);
+
+        String good = send("GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertTrue(good.startsWith("HTTP/1.1 200"), good);
+        assertTrue(good.endsWith("<html>hello</html>"), good);
+    }
+
+    private String send(String request) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.example.common.HttpRequestParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StaticFileHandlerTest {
+    @TempDir
+    Path root;
+
+    private String etag;
+
+    @BeforeEach
+    void writePage() throws Exception {
+        ContentEncoder.clear();
+        Path page = root.resolve("page.html");
+        Files.writeString(page, "<p>compress me</p>\n".repeat(256));
+        etag = StaticFileHandler.etag(Files.size(page), Files.getLastModifiedTime(page).toMillis());
+    }
+
+    @Test
+    void conditionalRequestForTheGzipVariantIsNotCompressed() throws Exception {
+        String gzipEtag = ContentEncoder.variantEtag(etag, "gzip");
+        long before = compressions();
+        HTTPResponse response = get("If-None-Match: " + gzipEtag + "\r\nAccept-Encoding: gzip\r\n", true);
+
+        assertEquals(304, response.getStatusCode());
+        assertEquals(gzipEtag, response.getHeader("ETag"));
+        assertEquals(before, compressions());
+    }
+
+    @Test
+    void eventLoopServesIdentityUntilTheVariantIsReady() throws Exception {
+        HTTPResponse first = get("Accept-Encoding: gzip\r\n", false);
+        assertEquals(200, first.getStatusCode());
+        String head = new String(first.headerBytes(), StandardCharsets.ISO_8859_1);
+        assertFalse(head.contains("Content-Encoding"), head);
+        assertTrue(head.contains("ETag: " + etag + "\r\n"), head);
+
+        for (int attempt = 0; ; attempt++) {
+            HTTPResponse response = get("Accept-Encoding: gzip\r\n", false);
+            if ("gzip".equals(response.getHeader("Content-Encoding"))) {
+                assertEquals(ContentEncoder.variantEtag(etag, "gzip"), response.getHeader("ETag"));
+                return;
+            }
+            assertTrue(attempt < 100, "gzip variant was never prepared");
+            Thread.sleep(50);
+        }
+    }
+
+    private static long compressions() {
+        String stats = ContentEncoder.getStats();
+        int start = stats.indexOf("compressions=") + "compressions=".length();
+        return Long.parseLong(stats.substring(start, stats.indexOf(' ', start)));
+    }
+
+    private HTTPResponse get(String headers, boolean mayBlock) throws Exception {
+        String raw = "GET /page.html HTTP/1.1\r\nHost: localhost\r\n" + headers + "\r\n";
+        HttpRequestParser parser = new HttpRequestParser(8192, 100, 1024 * 1024);
+        assertTrue(parser.parse(ByteBuffer.wrap(raw.getBytes(StandardCharsets.ISO_8859_1))));
+        return HTTPHandler.process(new HTTPRequest(parser), root.toString(), mayBlock);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class AdminServer {
+    private static final int maxRequestLine = 1024;
+    private static final int maxHeadBytes = 8192;
+
+    public static ServerSocket start(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> acceptLoop(serverSocket), "proxy-admin");
+        thread.setDaemon(true);
+        thread.start();
+        return serverSocket;
+    }
+
+    private static void acceptLoop(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(5000);
+                handle(socket);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Admin endpoint error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void handle(Socket socket) throws IOException {
+        String requestLine = readRequestLine(socket.getInputStream());
+        String[] parts = requestLine.split(" ");
+        OutputStream output = socket.getOutputStream();
+        if (parts.length == 3 && parts[0].equals("GET") && (parts[1].equals("/metrics") || parts[1].startsWith("/metrics?"))) {
+            respond(output, "200 OK", "text/plain; version=0.0.4; charset=utf-8", ProxyMetrics.render());
+        } else {
+            respond(output, "404 Not Found", "text/plain", "Not Found\n");
+        }
+    }
+
+    private static String readRequestLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = input.read()) != -1 && b != '\n' && line.length() < maxRequestLine) {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+
+        // drain the remaining header lines so closing the socket does not reset the response
+        int window = b == '\n' ? 0x0d0a : 0;
+        int skipped = 0;
+        while (window != 0x0d0a0d0a && skipped++ < maxHeadBytes && (b = input.read()) != -1) {
+            window = (window << 8) | b;
+        }
+        return line.toString();
+    }
+
+    private static void respond(OutputStream output, String status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        output.write(("HTTP/1.1 " + status + "\r\nContent-Type: " + contentType + "\r\nContent-Length: " + bytes.length
+                + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        output.write(bytes);
+        output.flush();
+    }
+}
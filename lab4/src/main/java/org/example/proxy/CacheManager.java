@@ -1,23 +1,438 @@
 package org.example.proxy;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.example.common.FrequencySketch;
 
 public class CacheManager {
-    private static final ConcurrentHashMap<String, byte[]> cache = new ConcurrentHashMap<>();
+    private static final long maxBytes = Long.getLong("proxy.cacheMaxBytes", 64L * 1024 * 1024);
+    private static final long maxEntryBytes = Long.getLong("proxy.cacheMaxEntryBytes", 8L * 1024 * 1024);
+    private static final long defaultTtlMillis = Long.getLong("proxy.cacheDefaultTtl", 60) * 1000;
+    private static final long maxHeuristicTtlMillis = 24L * 60 * 60 * 1000;
+    private static final int[] cacheableStatuses = {200, 203, 300, 301, 308, 410};
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // only URLs with at least one cached entry are tracked, so this map is bounded by the entries themselves
+    private static final Map<String, Variants> varyByUrl = new HashMap<>();
+    private static final FrequencySketch sketch = new FrequencySketch(Integer.getInteger("proxy.cacheExpectedEntries", 4096));
+    private static final DiskCache disk = DiskCache.fromSystemProperties();
+    private static long currentBytes;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong expirations = new AtomicLong();
+    private static final AtomicLong rejections = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+
+    public static boolean canServeFromCache(Function<String, String> requestHeaders) {
+        return !hasDirective(requestHeaders.apply("Cache-Control"), "no-cache")
+                && !hasDirective(requestHeaders.apply("Cache-Control"), "no-store")
+                && !hasDirective(requestHeaders.apply("Pragma"), "no-cache");
+    }
 
-    public static void cacheResponse(String url, byte[] response) {
-        cache.put(url, response);
+    public static byte[] get(String url, Function<String, String> requestHeaders) {
+        if (!canServeFromCache(requestHeaders)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        synchronized (entries) {
+            Variants variants = varyByUrl.get(url);
+            String key = cacheKey(url, variants == null ? null : variants.names, requestHeaders);
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                removeEntry(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.response;
+        }
     }
 
-    public static boolean hasCached(String url) {
-        return cache.containsKey(url);
+    public static boolean serve(String url, Function<String, String> requestHeaders, OutputStream output,
+                                WritableByteChannel channel) throws IOException {
+        byte[] response = get(url, requestHeaders);
+        if (response != null) {
+            output.write(response);
+            ProxyMetrics.cacheServed(response.length);
+            return true;
+        }
+        if (disk == null || !canServeFromCache(requestHeaders)) {
+            return false;
+        }
+
+        synchronized (entries) {
+            Variants variants = varyByUrl.get(url);
+            if (variants != null && variants.names.length > 0) {
+                return false;
+            }
+        }
+        output.flush();
+        long transferred = disk.transferTo(url, channel);
+        if (transferred < 0) {
+            return false;
+        }
+        ProxyMetrics.cacheServed(transferred);
+        misses.decrementAndGet();
+        hits.incrementAndGet();
+        diskHits.incrementAndGet();
+        return true;
     }
 
-    public static byte[] getCachedResponse(String url) {
-        return cache.get(url);
+    // the key a request would be cached under, given the Vary this URL's cached responses carried
+    public static String variantKey(String url, Function<String, String> requestHeaders) {
+        synchronized (entries) {
+            Variants variants = varyByUrl.get(url);
+            return cacheKey(url, variants == null ? null : variants.names, requestHeaders);
+        }
+    }
+
+    public static boolean isCacheable(ResponseHead head, Function<String, String> requestHeaders) {
+        return !hasDirective(requestHeaders.apply("Cache-Control"), "no-store")
+                && freshnessLifetime(head, requestHeaders.apply("Authorization") != null, System.currentTimeMillis()) > 0
+                && varyNames(head.header("Vary")) != null;
+    }
+
+    public static boolean put(String url, Function<String, String> requestHeaders, byte[] response) {
+        if (response.length > getMaxEntryBytes()
+                || hasDirective(requestHeaders.apply("Cache-Control"), "no-store")) {
+            return false;
+        }
+
+        ResponseHead head = ResponseHead.parse(response, response.length);
+        if (head == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long lifetime = freshnessLifetime(head, requestHeaders.apply("Authorization") != null, now);
+        if (lifetime <= 0) {
+            return false;
+        }
+
+        String[] vary = varyNames(head.header("Vary"));
+        if (vary == null) {
+            return false;
+        }
+
+        boolean stored = false;
+        synchronized (entries) {
+            Variants variants = varyByUrl.get(url);
+            if (variants != null && !Arrays.equals(variants.names, vary)) {
+                removeUrl(url);
+            }
+
+            String key = cacheKey(url, vary, requestHeaders);
+            removeEntry(key);
+            if (response.length <= maxBytes && admit(key, response.length)) {
+                entries.put(key, new Entry(url, response, now + lifetime));
+                currentBytes += response.length;
+                varyByUrl.computeIfAbsent(url, k -> new Variants(vary)).entries++;
+                stored = true;
+            } else {
+                rejections.incrementAndGet();
+            }
+        }
+
+        // the disk tier is keyed by URL only, so variant responses stay in memory
+        if (disk != null) {
+            if (vary.length == 0) {
+                stored |= disk.put(url, response, now + lifetime);
+            } else {
+                disk.remove(url);
+            }
+        }
+        return stored;
+    }
+
+    public static void invalidate(String url) {
+        synchronized (entries) {
+            removeUrl(url);
+        }
+        if (disk != null) {
+            disk.remove(url);
+        }
     }
 
     public static void clearCache() {
-        cache.clear();
+        synchronized (entries) {
+            entries.clear();
+            varyByUrl.clear();
+            currentBytes = 0;
+        }
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    public static void flush() {
+        if (disk != null) {
+            disk.flush();
+        }
+    }
+
+    public static long getMaxEntryBytes() {
+        return disk != null ? maxEntryBytes : Math.min(maxEntryBytes, maxBytes);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    public static long getCurrentBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    public static int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static double getHitRatio() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    public static String getStats() {
+        return "hits=" + getHits() + " misses=" + getMisses()
+                + " hitRatio=" + String.format(Locale.ROOT, "%.3f", getHitRatio())
+                + " entries=" + getEntryCount() + " bytes=" + getCurrentBytes() + "/" + maxBytes
+                + " evictions=" + getEvictions() + " expirations=" + expirations.get()
+                + " rejected=" + rejections.get() + " diskHits=" + getDiskHits()
+                + (disk == null ? "" : " disk[" + disk.getStats() + "]");
+    }
+
+    private static boolean admit(String key, long size) {
+        long excess = currentBytes + size - maxBytes;
+        if (excess <= 0) {
+            return true;
+        }
+
+        int candidateFrequency = sketch.frequency(key);
+        long now = System.currentTimeMillis();
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        for (Map.Entry<String, Entry> cached : entries.entrySet()) {
+            if (freed >= excess) {
+                break;
+            }
+            if (cached.getValue().expiresAt > now && sketch.frequency(cached.getKey()) > candidateFrequency) {
+                return false;
+            }
+            victims.add(cached.getKey());
+            freed += cached.getValue().response.length;
+        }
+
+        for (String victim : victims) {
+            removeEntry(victim);
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    private static void removeEntry(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        currentBytes -= entry.response.length;
+        Variants variants = varyByUrl.get(entry.url);
+        if (variants != null && --variants.entries == 0) {
+            varyByUrl.remove(entry.url);
+        }
+    }
+
+    private static void removeUrl(String url) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.url.equals(url)) {
+                currentBytes -= entry.response.length;
+                iterator.remove();
+            }
+        }
+        varyByUrl.remove(url);
+    }
+
+    private static long freshnessLifetime(ResponseHead head, boolean authorized, long now) {
+        boolean cacheableStatus = false;
+        for (int status : cacheableStatuses) {
+            cacheableStatus |= head.statusCode() == status;
+        }
+        if (!cacheableStatus) {
+            return 0;
+        }
+
+        String cacheControl = head.header("Cache-Control");
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "private")
+                || hasDirective(cacheControl, "no-cache")) {
+            return 0;
+        }
+        if (authorized && !hasDirective(cacheControl, "public") && directiveValue(cacheControl, "s-maxage") < 0) {
+            return 0;
+        }
+
+        long age = Math.max(0, parseSeconds(head.header("Age"))) * 1000;
+        long sharedMaxAge = directiveValue(cacheControl, "s-maxage");
+        if (sharedMaxAge >= 0) {
+            return sharedMaxAge * 1000 - age;
+        }
+        long maxAge = directiveValue(cacheControl, "max-age");
+        if (maxAge >= 0) {
+            return maxAge * 1000 - age;
+        }
+
+        long date = parseDate(head.header("Date"), now);
+        String expires = head.header("Expires");
+        if (expires != null) {
+            return parseDate(expires, 0) - date - age;
+        }
+
+        String lastModified = head.header("Last-Modified");
+        if (lastModified != null) {
+            long modified = parseDate(lastModified, date);
+            return Math.min((date - modified) / 10, maxHeuristicTtlMillis) - age;
+        }
+        return defaultTtlMillis - age;
+    }
+
+    static String[] varyNames(String vary) {
+        if (vary == null || vary.isBlank()) {
+            return new String[0];
+        }
+        String[] names = vary.split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim().toLowerCase(Locale.ROOT);
+            if (names[i].equals("*")) {
+                return null;
+            }
+        }
+        return names;
+    }
+
+    private static String cacheKey(String url, String[] vary, Function<String, String> requestHeaders) {
+        if (vary == null || vary.length == 0) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url);
+        for (String name : vary) {
+            key.append('\n').append(name).append('=').append(varyValue(requestHeaders, name));
+        }
+        return key.toString();
+    }
+
+    static String varyValue(Function<String, String> requestHeaders, String name) {
+        String value = requestHeaders.apply(name);
+        return value == null ? "" : value.trim();
+    }
+
+    private static boolean hasDirective(String header, String directive) {
+        return directiveIndex(header, directive) >= 0;
+    }
+
+    private static long directiveValue(String header, String directive) {
+        int index = directiveIndex(header, directive);
+        if (index < 0) {
+            return -1;
+        }
+        int start = index + directive.length();
+        if (start >= header.length() || header.charAt(start) != '=') {
+            return -1;
+        }
+        int end = header.indexOf(',', start);
+        return parseSeconds(header.substring(start + 1, end < 0 ? header.length() : end).replace("\"", ""));
+    }
+
+    private static int directiveIndex(String header, String directive) {
+        if (header == null) {
+            return -1;
+        }
+        String lowerCase = header.toLowerCase(Locale.ROOT);
+        int from = 0;
+        while (true) {
+            int index = lowerCase.indexOf(directive, from);
+            if (index < 0) {
+                return -1;
+            }
+            int end = index + directive.length();
+            boolean startsToken = index == 0 || header.charAt(index - 1) == ',' || header.charAt(index - 1) == ' ';
+            boolean endsToken = end == header.length() || header.charAt(end) == ',' || header.charAt(end) == '='
+                    || header.charAt(end) == ' ';
+            if (startsToken && endsToken) {
+                return index;
+            }
+            from = end;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseDate(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return fallback;
+        }
+    }
+
+    private record Entry(String url, byte[] response, long expiresAt) {
+    }
+
+    private static class Variants {
+        private final String[] names;
+        private int entries;
+
+        Variants(String[] names) {
+            this.names = names;
+        }
     }
-}
\ No newline at end of file
+}
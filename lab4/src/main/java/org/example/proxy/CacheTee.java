@@ -0,0 +1,81 @@
+package org.example.proxy;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+public class CacheTee {
+    private static final int maxHeadBytes = 64 * 1024;
+
+    private final Function<String, String> requestHeaders;
+    private final long limit;
+    private byte[] data = new byte[8192];
+    private int size;
+    private boolean headChecked;
+    private boolean abandoned;
+
+    public CacheTee(Function<String, String> requestHeaders) {
+        this.requestHeaders = requestHeaders;
+        this.limit = CacheManager.getMaxEntryBytes();
+    }
+
+    public void write(byte[] buffer, int offset, int length) {
+        if (abandoned) {
+            return;
+        }
+        if (size + length > limit) {
+            abandon();
+            return;
+        }
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, (int) Math.min(Math.max(size + length, data.length * 2L), limit));
+        }
+        System.arraycopy(buffer, offset, data, size, length);
+        size += length;
+
+        if (!headChecked) {
+            checkHead();
+        }
+    }
+
+    public byte[] finish() {
+        if (abandoned || !headChecked) {
+            return null;
+        }
+        return size == data.length ? data : Arrays.copyOf(data, size);
+    }
+
+    private void checkHead() {
+        ResponseHead head = ResponseHead.parse(data, size);
+        if (head == null) {
+            if (size > maxHeadBytes) {
+                abandon();
+            }
+            return;
+        }
+
+        headChecked = true;
+        if (!CacheManager.isCacheable(head, requestHeaders)) {
+            abandon();
+            return;
+        }
+
+        String contentLength = head.header("Content-Length");
+        if (contentLength != null) {
+            try {
+                long expected = head.length() + Long.parseLong(contentLength.trim());
+                if (expected > limit) {
+                    abandon();
+                } else if (expected > data.length) {
+                    data = Arrays.copyOf(data, (int) expected);
+                }
+            } catch (NumberFormatException e) {
+                abandon();
+            }
+        }
+    }
+
+    private void abandon() {
+        abandoned = true;
+        data = null;
+    }
+}
@@ -3,8 +3,26 @@ package org.example.proxy;
 import java.io.*;
 import java.net.Socket;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.example.common.BufferPool;
+import org.example.common.HttpParseException;
+import org.example.common.HttpRequestParser;
 
 public class ClientHandler implements Runnable {
+    private static final int maxHeaderSize = 8192;
+    private static final int maxHeaders = 100;
+    private static final int maxBodySize = 1024 * 1024;
+    private static final BufferPool inputPool = new BufferPool(8192, 1024);
+    private static final BufferPool relayPool = new BufferPool(16 * 1024, 1024);
+    private static final String[] hopByHopHeaders = {
+            "Host", "Connection", "Keep-Alive", "Proxy-Connection", "Proxy-Authorization", "TE", "Trailer",
+            "Transfer-Encoding", "Upgrade", "Content-Length"
+    };
+
     private final Socket clientSocket;
 
     public ClientHandler(Socket clientSocket) {
@@ -13,26 +31,35 @@ public class ClientHandler implements Runnable {
 
     @Override
     public void run() {
-        try (
-                InputStream clientInput = clientSocket.getInputStream();
-                OutputStream clientOutput = clientSocket.getOutputStream();
-                BufferedReader reader = new BufferedReader(new InputStreamReader(clientInput));
-                PrintWriter writer = new PrintWriter(clientOutput, true)
-        ) {
-            String requestLine = reader.readLine();
-            if (requestLine == null || requestLine.isEmpty()) {
+        ByteBuffer buffer = inputPool.acquire();
+        HttpRequestParser parser = new HttpRequestParser(maxHeaderSize, maxHeaders, maxBodySize);
+        boolean tunnelled = false;
+        String method = null;
+        long start = 0;
+        ProxyMetrics.connectionOpened();
+        try {
+            InputStream clientInput = clientSocket.getInputStream();
+            OutputStream clientOutput = clientSocket.getOutputStream();
+            PrintWriter writer = new PrintWriter(clientOutput, true);
+            try {
+                if (!readRequest(clientInput, buffer, parser)) {
+                    return;
+                }
+            } catch (HttpParseException e) {
+                Logger.log("Rejected request: " + e.getMessage());
+                sendBadRequestResponse(writer);
                 return;
             }
 
-            String[] requestParts = requestLine.split(" ");
-            if (requestParts.length < 3) {
-                sendBadRequestResponse(writer);
+            start = System.nanoTime();
+            method = parser.method();
+            String url = parser.target();
+
+            if (method.equals("CONNECT")) {
+                tunnelled = TunnelRelay.open(clientSocket, url, buffer);
                 return;
             }
 
-            String method = requestParts[0];
-            String url = requestParts[1];
-
             if (!url.startsWith("http")) {
                 sendBadRequestResponse(writer);
                 return;
@@ -41,14 +68,37 @@ public class ClientHandler implements Runnable {
             Logger.log("Method: " + method + " | URL: " + url);
 
             if (method.equals("GET") || method.equals("HEAD") || method.equals("POST")) {
-                if (method.equals("GET") && CacheManager.hasCached(url)) {
-                    Logger.log("Cache hit for: " + url);
-                    byte[] cachedResponse = CacheManager.getCachedResponse(url);
-                    clientOutput.write(cachedResponse);
-                    return;
+                RequestCoalescer.Flight flight = null;
+                if (method.equals("GET")) {
+                    WritableByteChannel clientChannel = clientSocket.getChannel() != null
+                            ? clientSocket.getChannel() : Channels.newChannel(clientOutput);
+                    if (CacheManager.serve(url, parser::header, clientOutput, clientChannel)) {
+                        Logger.log("Cache hit for: " + url);
+                        return;
+                    }
+
+                    if (CacheManager.canServeFromCache(parser::header) && parser.header("Authorization") == null) {
+                        String flightKey = CacheManager.variantKey(url, parser::header);
+                        flight = RequestCoalescer.lead(flightKey);
+                        if (flight == null) {
+                            byte[] sharedResponse = RequestCoalescer.await(flightKey, parser::header);
+                            if (sharedResponse != null) {
+                                Logger.log("Coalesced response for: " + url);
+                                clientOutput.write(sharedResponse);
+                                return;
+                            }
+                        }
+                    }
                 }
 
-                forwardRequestToServer(method, url, reader, clientOutput);
+                byte[] response = null;
+                try {
+                    response = forwardRequestToServer(method, url, parser, clientOutput);
+                } finally {
+                    if (flight != null) {
+                        RequestCoalescer.complete(flight, response, parser::header);
+                    }
+                }
 
             } else {
                 sendMethodNotAllowedResponse(writer);
@@ -56,74 +106,122 @@ public class ClientHandler implements Runnable {
         } catch (IOException e) {
             System.err.println("Client handler error: " + e.getMessage());
         } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                System.err.println("Error closing client socket: " + e.getMessage());
+            if (method != null) {
+                ProxyMetrics.requestCompleted(method, System.nanoTime() - start);
+            }
+            ProxyMetrics.connectionClosed();
+            parser.reset();
+            inputPool.release(buffer);
+            if (!tunnelled) {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing client socket: " + e.getMessage());
+                }
             }
         }
     }
 
-    private void forwardRequestToServer(String method, String url, BufferedReader clientReader, OutputStream clientOutput) {
-        try {
-            URL targetUrl = new URL(url);
-            Socket serverSocket = new Socket(targetUrl.getHost(), 80);
-
-            try (
-                    OutputStream serverOutput = serverSocket.getOutputStream();
-                    InputStream serverInput = serverSocket.getInputStream()
-            ) {
-                PrintWriter serverWriter = new PrintWriter(serverOutput, true);
-                serverWriter.println(method + " " + targetUrl.getFile() + " HTTP/1.1");
-                serverWriter.println("Host: " + targetUrl.getHost());
-                serverWriter.println("Connection: close");
-
-                if (method.equals("POST")) {
-                    String postData = readPostData(clientReader);
-                    serverWriter.println("Content-Length: " + postData.length());
-                    serverWriter.println();
-                    serverWriter.println(postData);
+    private boolean readRequest(InputStream input, ByteBuffer buffer, HttpRequestParser parser)
+            throws IOException, HttpParseException {
+        buffer.flip();
+        while (!parser.parse(buffer)) {
+            buffer.clear();
+            int bytesRead = input.read(buffer.array(), 0, buffer.capacity());
+            if (bytesRead == -1) {
+                if (parser.isIdle()) {
+                    return false;
                 }
+                throw new EOFException("Connection closed in the middle of a request");
+            }
+            buffer.limit(bytesRead);
+        }
+        return true;
+    }
 
-                serverWriter.println();
-                serverWriter.flush();
-
-                if (method.equals("POST")) {
-                    sendPostResponse(clientOutput);
-                }
+    private byte[] forwardRequestToServer(String method, String url, HttpRequestParser request, OutputStream clientOutput) {
+        ByteBuffer chunk = relayPool.acquire();
+        try {
+            URL targetUrl = new URL(url);
+            String host = targetUrl.getHost();
+            int port = targetUrl.getPort() == -1 ? 80 : targetUrl.getPort();
 
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                ByteArrayOutputStream responseBuffer = new ByteArrayOutputStream();
-                while ((bytesRead = serverInput.read(buffer)) != -1) {
-                    responseBuffer.write(buffer, 0, bytesRead);
-                }
+            if (method.equals("POST")) {
+                sendPostResponse(clientOutput);
+            }
 
-                if (method.equals("HEAD")) {
-                    String headers = responseBuffer.toString();
-                    clientOutput.write(headers.getBytes());
-                } else {
-                    if (method.equals("GET")) {
-                        CacheManager.cacheResponse(url, responseBuffer.toByteArray());
-                        Logger.log("Response cached for: " + url);
+            CacheTee tee = method.equals("GET") ? new CacheTee(request::header) : null;
+            for (int attempt = 0; ; attempt++) {
+                UpstreamConnection connection = UpstreamPool.acquire(host, port);
+                ResponseRelay relay = new ResponseRelay(connection.getInput(), clientOutput, tee, chunk.array());
+                boolean reusable = false;
+                try {
+                    long start = System.nanoTime();
+                    writeUpstreamRequest(connection.getOutput(), method, targetUrl, port, request);
+                    reusable = relay.relay(method.equals("HEAD"));
+                    clientOutput.flush();
+                    ProxyMetrics.upstreamResponded(System.nanoTime() - start);
+                    break;
+                } catch (IOException e) {
+                    // a pooled connection may have been closed by the origin while idle; retry once on a fresh one
+                    if (!connection.isReused() || relay.hasStarted() || method.equals("POST") || attempt > 0) {
+                        throw e;
                     }
-                    clientOutput.write(responseBuffer.toByteArray());
+                } finally {
+                    UpstreamPool.release(connection, reusable);
                 }
-            } finally {
-                serverSocket.close();
             }
+
+            byte[] captured = tee == null ? null : tee.finish();
+            if (captured != null && CacheManager.put(url, request::header, captured)) {
+                Logger.log("Response cached for: " + url);
+            } else if (method.equals("POST")) {
+                CacheManager.invalidate(url);
+            }
+            return captured;
         } catch (IOException e) {
+            ProxyMetrics.upstreamFailed();
             System.err.println("Error forwarding request: " + e.getMessage());
+            return null;
+        } finally {
+            relayPool.release(chunk);
+        }
+    }
+
+    private void writeUpstreamRequest(OutputStream serverOutput, String method, URL targetUrl, int port,
+                                      HttpRequestParser request) throws IOException {
+        StringBuilder head = new StringBuilder()
+                .append(method).append(' ').append(targetUrl.getFile().isEmpty() ? "/" : targetUrl.getFile())
+                .append(" HTTP/1.1\r\n")
+                .append("Host: ").append(targetUrl.getHost()).append(port == 80 ? "" : ":" + port).append("\r\n");
+
+        // end-to-end headers go to the origin, so a response that varies on them is chosen for this client
+        for (int i = 0; i < request.headerCount(); i++) {
+            String name = request.headerName(i);
+            if (!isHopByHop(request, name)) {
+                head.append(name).append(": ").append(request.headerValue(i)).append("\r\n");
+            }
+        }
+        if (method.equals("POST")) {
+            head.append("Content-Length: ").append(request.bodyLength()).append("\r\n");
         }
+        head.append("\r\n");
+        serverOutput.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        if (method.equals("POST")) {
+            ByteBuffer body = request.body();
+            serverOutput.write(body.array(), body.arrayOffset(), body.remaining());
+        }
+        serverOutput.flush();
     }
 
-    private String readPostData(BufferedReader clientReader) throws IOException {
-        StringBuilder postData = new StringBuilder();
-        String line;
-        while ((line = clientReader.readLine()) != null && !line.isEmpty()) {
-            postData.append(line).append("\n");
+    private static boolean isHopByHop(HttpRequestParser request, String name) {
+        for (String hopByHop : hopByHopHeaders) {
+            if (hopByHop.equalsIgnoreCase(name)) {
+                return true;
+            }
         }
-        return postData.toString();
+        return request.headerContainsToken("Connection", name);
     }
 
     private void sendBadRequestResponse(PrintWriter writer) {
@@ -0,0 +1,726 @@
+package org.example.proxy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class DiskCache {
+    private static final int recordMagic = 0x50524331;
+    private static final int recordHeaderBytes = 20;
+    private static final int indexMagic = 0x50524958;
+    private static final int indexHeaderBytes = 64;
+    private static final int slotBytes = 32;
+    private static final int maxKeyBytes = 64 * 1024;
+    private static final long emptySlot = 0;
+    // only found in indexes written before deletion switched to backward shifting; loading rehashes them away
+    private static final long deletedSlot = 1;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final int slotCount;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer index;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment active;
+    private int liveEntries;
+    // slots still pointing into evicted segments; they are cleared lazily by write probes or by a sweep
+    private int staleSlots;
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong evictedSegments = new AtomicLong();
+
+    public DiskCache(Path directory, long maxBytes, long segmentBytes, int slotCount) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        this.slotCount = Integer.highestOneBit(Math.max(slotCount, 1024) - 1) << 1;
+        Files.createDirectories(directory);
+
+        Path indexPath = directory.resolve("index.dat");
+        long indexSize = indexHeaderBytes + (long) this.slotCount * slotBytes;
+        boolean existing = Files.exists(indexPath) && Files.size(indexPath) == indexSize;
+        this.indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+
+        openSegments();
+        if (existing && index.getInt(0) == indexMagic && index.getInt(4) == this.slotCount) {
+            loadIndex();
+        } else {
+            rebuildIndex();
+        }
+        active = createSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+    }
+
+    public static DiskCache fromSystemProperties() {
+        long maxBytes = Long.getLong("proxy.diskCacheMaxBytes", 1024L * 1024 * 1024);
+        if (maxBytes <= 0) {
+            return null;
+        }
+
+        Path directory = Paths.get(System.getProperty("proxy.diskCacheDir", "proxy-cache"));
+        long segmentBytes = Long.getLong("proxy.diskCacheSegmentBytes", 64L * 1024 * 1024);
+        int slots = Integer.getInteger("proxy.diskCacheIndexSlots", 1 << 20);
+        long start = System.nanoTime();
+        try {
+            DiskCache cache = new DiskCache(directory, maxBytes, segmentBytes, slots);
+            System.out.println("Disk cache: loaded " + cache.getEntryCount() + " entries (" + cache.getBytes()
+                    + " bytes) from " + directory.toAbsolutePath() + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            cache.startCompactor(Long.getLong("proxy.diskCacheCompactInterval", 60) * 1000);
+            return cache;
+        } catch (IOException e) {
+            System.err.println("Disk cache disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean put(String key, byte[] response, long expiresAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long recordSize = recordHeaderBytes + keyBytes.length + (long) response.length;
+        if (keyBytes.length > maxKeyBytes || recordSize > segmentBytes || recordSize > maxBytes) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            long hash = hash(keyBytes);
+            removeSlot(findSlotPurging(hash, keyBytes));
+            if (liveEntries + staleSlots >= slotCount / 4 * 3 && !makeRoom()) {
+                return false;
+            }
+            if (active.size + recordSize > segmentBytes) {
+                active = createSegment(active.id + 1);
+            }
+
+            long offset = active.size;
+            ByteBuffer header = ByteBuffer.allocate(recordHeaderBytes + keyBytes.length);
+            header.putInt(recordMagic).putInt(keyBytes.length).putInt(response.length).putLong(expiresAt)
+                    .put(keyBytes).flip();
+            writeFully(active.channel, offset, header, ByteBuffer.wrap(response));
+            active.size += recordSize;
+            active.liveBytes += recordHeaderBytes + response.length;
+            totalBytes += recordSize;
+
+            insertSlot(hash, active.id, offset, response.length, expiresAt);
+            writes.incrementAndGet();
+            evictOldSegments();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Disk cache write failed: " + e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        Segment segment;
+        long position;
+        long length;
+
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(hash(keyBytes), keyBytes);
+            if (slot < 0 || index.getLong(slotPosition(slot) + 8) <= System.currentTimeMillis()) {
+                misses.incrementAndGet();
+                return -1;
+            }
+            int slotPosition = slotPosition(slot);
+            segment = segments.get(index.getInt(slotPosition + 24));
+            position = index.getLong(slotPosition + 16) + recordHeaderBytes + keyBytes.length;
+            length = index.getInt(slotPosition + 28);
+            if (segment == null || position + length > segment.size) {
+                misses.incrementAndGet();
+                return -1;
+            }
+            segment.acquire();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            long transferred = 0;
+            while (transferred < length) {
+                long count = segment.channel.transferTo(position + transferred, length - transferred, target);
+                if (count <= 0) {
+                    throw new EOFException("Disk cache segment truncated: " + segment.path);
+                }
+                transferred += count;
+            }
+            hits.incrementAndGet();
+            return length;
+        } finally {
+            segment.release();
+        }
+    }
+
+    public void remove(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            removeSlot(findSlotPurging(hash(keyBytes), keyBytes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearIndex();
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment != active) {
+                    retire(segment);
+                }
+            }
+            active.liveBytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes * 2 <= segment.size) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (Segment segment : candidates) {
+            lock.writeLock().lock();
+            try {
+                if (segments.get(segment.id) == segment) {
+                    relocate(segment);
+                    retire(segment);
+                    compactions.incrementAndGet();
+                }
+            } catch (IOException e) {
+                System.err.println("Disk cache compaction failed for " + segment.path + ": " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            index.force();
+            active.channel.force(false);
+        } catch (IOException e) {
+            System.err.println("Disk cache flush failed: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        flush();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            indexChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        lock.readLock().lock();
+        try {
+            return liveEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getBytes() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String getStats() {
+        int segmentCount;
+        lock.readLock().lock();
+        try {
+            segmentCount = segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return "hits=" + getHits() + " misses=" + getMisses() + " entries=" + getEntryCount()
+                + " bytes=" + getBytes() + "/" + maxBytes + " segments=" + segmentCount
+                + " writes=" + writes.get() + " compactions=" + compactions.get()
+                + " evictedSegments=" + evictedSegments.get();
+    }
+
+    private void startCompactor(long interval) {
+        Thread compactor = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                compact();
+            }
+        }, "disk-cache-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    private void openSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring("segment-".length(), name.length() - ".dat".length()));
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Segment segment = new Segment(id, file, channel, channel.size());
+                segments.put(id, segment);
+                totalBytes += segment.size;
+            }
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path file = directory.resolve(String.format("segment-%08d.dat", id));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, file, channel, 0);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void loadIndex() {
+        boolean rehash = false;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = slotPosition(slot);
+            long stored = index.getLong(position);
+            if (stored == deletedSlot) {
+                rehash = true;
+            }
+            if (!isLive(stored)) {
+                continue;
+            }
+            // the index may have outlived a crash that truncated a segment, so never trust an offset past the end
+            Segment segment = segments.get(index.getInt(position + 24));
+            long offset = index.getLong(position + 16);
+            int length = index.getInt(position + 28);
+            if (segment == null || offset < 0 || length < 0 || !recordFits(segment, offset, length)) {
+                index.putLong(position, deletedSlot);
+                rehash = true;
+                continue;
+            }
+            segment.liveBytes += recordHeaderBytes + length;
+            segment.entries++;
+            liveEntries++;
+        }
+        if (rehash) {
+            rehash();
+        }
+    }
+
+    private static boolean recordFits(Segment segment, long offset, int length) {
+        long end = offset + recordHeaderBytes + length;
+        if (end > segment.size) {
+            return false;
+        }
+        if (end + maxKeyBytes <= segment.size) {
+            return true;
+        }
+        // only records near the end of a segment can have lost their key to truncation, so only they cost a read
+        ByteBuffer header = ByteBuffer.allocate(recordHeaderBytes);
+        try {
+            readFully(segment.channel, offset, header);
+        } catch (IOException e) {
+            return false;
+        }
+        return header.getInt(0) == recordMagic && header.getInt(8) == length
+                && end + header.getInt(4) <= segment.size;
+    }
+
+    private void rehash() {
+        ByteBuffer live = ByteBuffer.allocate(liveEntries * slotBytes);
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = slotPosition(slot);
+            if (isLive(index.getLong(position))) {
+                live.put(index.slice(position, slotBytes));
+            }
+            index.putLong(position, emptySlot);
+        }
+        live.flip();
+        while (live.hasRemaining()) {
+            int position = slotPosition(freeSlot(live.getLong(live.position())));
+            index.put(position, live, live.position(), slotBytes);
+            live.position(live.position() + slotBytes);
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        clearIndex();
+        for (Segment segment : segments.values()) {
+            ByteBuffer header = ByteBuffer.allocate(recordHeaderBytes);
+            long offset = 0;
+            while (offset + recordHeaderBytes <= segment.size) {
+                header.clear();
+                readFully(segment.channel, offset, header);
+                header.flip();
+                int keyLength = header.getInt(4);
+                int length = header.getInt(8);
+                long expiresAt = header.getLong(12);
+                long recordSize = recordHeaderBytes + (long) keyLength + length;
+                if (header.getInt(0) != recordMagic || keyLength < 0 || length < 0 || offset + recordSize > segment.size) {
+                    break;
+                }
+                ByteBuffer key = ByteBuffer.allocate(keyLength);
+                readFully(segment.channel, offset + recordHeaderBytes, key);
+                byte[] keyBytes = key.array();
+                long hash = hash(keyBytes);
+                removeSlot(findSlot(hash, keyBytes));
+                insertSlot(hash, segment.id, offset, length, expiresAt);
+                segment.liveBytes += recordHeaderBytes + length;
+                offset += recordSize;
+            }
+        }
+        index.putInt(0, indexMagic);
+        index.putInt(4, slotCount);
+    }
+
+    private void clearIndex() {
+        for (int position = indexHeaderBytes; position < index.capacity(); position += 8) {
+            index.putLong(position, emptySlot);
+        }
+        for (Segment segment : segments.values()) {
+            segment.liveBytes = 0;
+            segment.entries = 0;
+        }
+        liveEntries = 0;
+        staleSlots = 0;
+        index.putInt(0, indexMagic);
+        index.putInt(4, slotCount);
+    }
+
+    private void relocate(Segment segment) throws IOException {
+        long now = System.currentTimeMillis();
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = slotPosition(slot);
+            if (!isLive(index.getLong(position))) {
+                continue;
+            }
+            if (!segments.containsKey(index.getInt(position + 24))) {
+                removeSlot(slot--);
+                continue;
+            }
+            if (index.getInt(position + 24) != segment.id) {
+                continue;
+            }
+            if (index.getLong(position + 8) <= now) {
+                removeSlot(slot--);
+                continue;
+            }
+
+            long offset = index.getLong(position + 16);
+            ByteBuffer header = ByteBuffer.allocate(recordHeaderBytes);
+            readFully(segment.channel, offset, header);
+            long recordSize = recordHeaderBytes + (long) header.getInt(4) + header.getInt(8);
+            ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+            readFully(segment.channel, offset, record);
+            record.flip();
+
+            if (active.size + recordSize > segmentBytes) {
+                active = createSegment(active.id + 1);
+            }
+            long newOffset = active.size;
+            writeFully(active.channel, newOffset, record);
+            active.size += recordSize;
+            active.liveBytes += recordHeaderBytes + header.getInt(8);
+            totalBytes += recordSize;
+            segment.liveBytes -= recordHeaderBytes + header.getInt(8);
+            active.entries++;
+            segment.entries--;
+            index.putInt(position + 24, active.id);
+            index.putLong(position + 16, newOffset);
+        }
+    }
+
+    private void evictOldSegments() {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                return;
+            }
+            evict(oldest);
+        }
+    }
+
+    // the table is three quarters full: evict whole segments until an eighth of it is stale, so that the one sweep
+    // that follows pays for many puts
+    private boolean makeRoom() throws IOException {
+        while (staleSlots < slotCount / 8) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                if (active.entries == 0) {
+                    break;
+                }
+                active = createSegment(active.id + 1);
+            }
+            evict(oldest);
+        }
+        for (int slot = 0; slot < slotCount && staleSlots > 0; slot++) {
+            int position = slotPosition(slot);
+            if (isLive(index.getLong(position)) && !segments.containsKey(index.getInt(position + 24))) {
+                // removal shifts a later entry into this slot, so look at it again
+                removeSlot(slot--);
+            }
+        }
+        return liveEntries < slotCount / 4 * 3;
+    }
+
+    // the index still points into the segment; those slots become stale instead of being hunted down here
+    private void evict(Segment segment) {
+        liveEntries -= segment.entries;
+        staleSlots += segment.entries;
+        segment.entries = 0;
+        segment.liveBytes = 0;
+        retire(segment);
+        evictedSegments.incrementAndGet();
+    }
+
+    private void retire(Segment segment) {
+        segments.remove(segment.id);
+        totalBytes -= segment.size;
+        segment.retire();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            System.err.println("Error deleting disk cache segment " + segment.path + ": " + e.getMessage());
+        }
+    }
+
+    private int findSlot(long hash, byte[] keyBytes) {
+        int mask = slotCount - 1;
+        for (int probe = 0, slot = (int) hash & mask; probe < slotCount; probe++, slot = (slot + 1) & mask) {
+            long stored = index.getLong(slotPosition(slot));
+            if (stored == emptySlot) {
+                return -1;
+            }
+            if (stored == hash && keyMatches(slot, keyBytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // like findSlot, but under the write lock it also clears stale slots met along the probe run
+    private int findSlotPurging(long hash, byte[] keyBytes) {
+        int mask = slotCount - 1;
+        int slot = (int) hash & mask;
+        for (int probe = 0; probe < slotCount; probe++) {
+            int position = slotPosition(slot);
+            long stored = index.getLong(position);
+            if (stored == emptySlot) {
+                return -1;
+            }
+            if (!segments.containsKey(index.getInt(position + 24))) {
+                // backward shifting refills this slot from later in the run, so it is looked at again
+                removeSlot(slot);
+                continue;
+            }
+            if (stored == hash && keyMatches(slot, keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(long hash, int segmentId, long offset, int length, long expiresAt) {
+        int position = slotPosition(freeSlot(hash));
+        index.putLong(position + 8, expiresAt);
+        index.putLong(position + 16, offset);
+        index.putInt(position + 24, segmentId);
+        index.putInt(position + 28, length);
+        index.putLong(position, hash);
+        segments.get(segmentId).entries++;
+        liveEntries++;
+    }
+
+    // put() keeps the table at most three quarters full, so a free slot always exists
+    private int freeSlot(long hash) {
+        int mask = slotCount - 1;
+        int slot = (int) hash & mask;
+        while (index.getLong(slotPosition(slot)) != emptySlot) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // backward-shift deletion: later members of the probe run move into the gap, so no tombstones are left behind
+    // and a miss always stops at the first empty slot
+    private void removeSlot(int slot) {
+        if (slot < 0) {
+            return;
+        }
+        int position = slotPosition(slot);
+        Segment segment = segments.get(index.getInt(position + 24));
+        if (segment != null) {
+            segment.liveBytes -= recordHeaderBytes + index.getInt(position + 28);
+            segment.entries--;
+            liveEntries--;
+        } else {
+            staleSlots--;
+        }
+
+        int mask = slotCount - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+            long stored = index.getLong(slotPosition(next));
+            if (stored == emptySlot) {
+                break;
+            }
+            int home = (int) stored & mask;
+            // an entry may fill the gap only if its home slot is not between the gap and where it sits now
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                index.put(slotPosition(gap), index, slotPosition(next), slotBytes);
+                gap = next;
+            }
+        }
+        index.putLong(slotPosition(gap), emptySlot);
+    }
+
+    private boolean keyMatches(int slot, byte[] keyBytes) {
+        int position = slotPosition(slot);
+        Segment segment = segments.get(index.getInt(position + 24));
+        if (segment == null) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordHeaderBytes + keyBytes.length);
+        try {
+            readFully(segment.channel, index.getLong(position + 16), record);
+        } catch (IOException e) {
+            return false;
+        }
+        return record.getInt(0) == recordMagic && record.getInt(4) == keyBytes.length
+                && record.getInt(8) == index.getInt(position + 28)
+                && Arrays.equals(record.array(), recordHeaderBytes, record.capacity(), keyBytes, 0, keyBytes.length);
+    }
+
+    private static boolean isLive(long hash) {
+        return hash != emptySlot && hash != deletedSlot;
+    }
+
+    private static int slotPosition(int slot) {
+        return indexHeaderBytes + slot * slotBytes;
+    }
+
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : keyBytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash == emptySlot || hash == deletedSlot ? hash + 2 : hash;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of disk cache segment");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer... buffers) throws IOException {
+        long offset = position;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        }
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes;
+        private int entries;
+        private int readers;
+        private boolean retired;
+
+        Segment(int id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        synchronized void acquire() {
+            readers++;
+        }
+
+        synchronized void release() {
+            if (--readers == 0 && retired) {
+                closeChannel();
+            }
+        }
+
+        synchronized void retire() {
+            retired = true;
+            if (readers == 0) {
+                closeChannel();
+            }
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing disk cache segment " + path + ": " + e.getMessage());
+            }
+        }
+    }
+}
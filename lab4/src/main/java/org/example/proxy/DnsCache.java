@@ -0,0 +1,43 @@
+package org.example.proxy;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DnsCache {
+    private static final long ttlMillis = Long.getLong("proxy.dnsTtl", 60) * 1000;
+
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    public static InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(host);
+        if (entry != null && entry.expiresAt > now) {
+            hits.incrementAndGet();
+            return entry.addresses;
+        }
+
+        misses.incrementAndGet();
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        entries.put(host, new Entry(addresses, now + ttlMillis));
+        return addresses;
+    }
+
+    public static void invalidate(String host) {
+        entries.remove(host);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    private record Entry(InetAddress[] addresses, long expiresAt) {
+    }
+}
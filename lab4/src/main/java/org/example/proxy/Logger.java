@@ -1,17 +1,178 @@
 package org.example.proxy;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 public class Logger {
-    private static final String logFile = "proxy.log";
+    private static final Path logFile = Paths.get(System.getProperty("proxy.logFile", "proxy.log"));
+    private static final int capacity = Integer.highestOneBit(Math.max(Integer.getInteger("proxy.logBufferSize", 8192), 2) - 1) << 1;
+    private static final long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("proxy.logFlushInterval", 100));
+    private static final boolean blockWhenFull = System.getProperty("proxy.logOverflow", "drop").equals("block");
+    private static final long maxFileBytes = Long.getLong("proxy.logMaxBytes", 10L * 1024 * 1024);
+    private static final int maxFiles = Integer.getInteger("proxy.logMaxFiles", 5);
+    private static final int batchBytes = 64 * 1024;
+    private static final long blockBackoffNanos = TimeUnit.MICROSECONDS.toNanos(50);
 
-    public static synchronized void log(String message) {
-        try (FileWriter writer = new FileWriter(logFile, true)) {
-            writer.write(LocalDateTime.now() + " - " + message + "\n");
-        } catch (IOException e) {
-            System.err.println("Logging error: " + e.getMessage());
+    // bounded multi-producer ring: a slot is free for position p when its sequence is p, readable when it is p + 1
+    private static final int mask = capacity - 1;
+    private static final AtomicLongArray sequences = new AtomicLongArray(capacity);
+    private static final String[] messages = new String[capacity];
+    private static final long[] timestamps = new long[capacity];
+    private static final AtomicLong tail = new AtomicLong();
+    private static volatile long head;
+    private static volatile long written;
+
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong rotations = new AtomicLong();
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(Logger::writeLoop, "proxy-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static void log(String message) {
+        long timestamp = System.currentTimeMillis();
+        while (!offer(message, timestamp)) {
+            if (!blockWhenFull) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(blockBackoffNanos);
+        }
+    }
+
+    public static void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (written < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    public static String getStats() {
+        return "logged=" + written + " pending=" + (tail.get() - head) + " dropped=" + getDropped()
+                + " rotations=" + rotations.get();
+    }
+
+    private static boolean offer(String message, long timestamp) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    messages[index] = message;
+                    timestamps[index] = timestamp;
+                    sequences.set(index, position + 1);
+                    if (position - head >= capacity / 2) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private static void writeLoop() {
+        StringBuilder batch = new StringBuilder(batchBytes);
+        FileChannel channel = null;
+        long fileBytes = 0;
+        long reportedDrops = 0;
+        long lastMillis = -1;
+        String lastTime = "";
+        while (true) {
+            long position = head;
+            while (batch.length() < batchBytes) {
+                int index = (int) position & mask;
+                if (sequences.get(index) != position + 1) {
+                    break;
+                }
+                if (timestamps[index] != lastMillis) {
+                    lastMillis = timestamps[index];
+                    lastTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastMillis), ZoneId.systemDefault()).toString();
+                }
+                batch.append(lastTime).append(" - ").append(messages[index]).append('\n');
+                messages[index] = null;
+                sequences.set(index, position + capacity);
+                position++;
+            }
+            head = position;
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                batch.append(LocalDateTime.now()).append(" - Dropped ").append(drops - reportedDrops)
+                        .append(" log entries (buffer full)\n");
+                reportedDrops = drops;
+            }
+
+            if (batch.length() == 0) {
+                written = position;
+                LockSupport.parkNanos(flushIntervalNanos);
+                continue;
+            }
+
+            try {
+                if (channel == null || fileBytes >= maxFileBytes) {
+                    channel = openLogFile(channel, fileBytes >= maxFileBytes);
+                    fileBytes = channel.size();
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    fileBytes += channel.write(bytes);
+                }
+            } catch (IOException e) {
+                System.err.println("Logging error: " + e.getMessage());
+                channel = null;
+            }
+            batch.setLength(0);
+            written = position;
+        }
+    }
+
+    private static FileChannel openLogFile(FileChannel current, boolean rotate) throws IOException {
+        if (current != null) {
+            current.close();
+        }
+        if (rotate) {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = i == 1 ? logFile : Paths.get(logFile + "." + (i - 1));
+                if (Files.exists(source)) {
+                    Files.move(source, Paths.get(logFile + "." + i), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.deleteIfExists(logFile);
+            rotations.incrementAndGet();
         }
+        return FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
     }
 }
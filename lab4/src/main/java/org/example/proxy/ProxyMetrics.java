@@ -0,0 +1,151 @@
+package org.example.proxy;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ProxyMetrics {
+    private static final double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+
+    private static final LongAdder accepted = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final AtomicInteger activeConnections = new AtomicInteger();
+    private static final ConcurrentHashMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private static final LongAdder cacheServedBytes = new LongAdder();
+    private static final LongAdder upstreamErrors = new LongAdder();
+
+    private static final LatencyHistogram requestDuration = new LatencyHistogram();
+    private static final LatencyHistogram upstreamConnect = new LatencyHistogram();
+    private static final LatencyHistogram upstreamResponse = new LatencyHistogram();
+
+    public static void connectionAccepted() {
+        accepted.increment();
+    }
+
+    public static void connectionRejected() {
+        rejected.increment();
+    }
+
+    public static void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    public static void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    public static void requestCompleted(String method, long nanos) {
+        String key = method.equals("GET") || method.equals("HEAD") || method.equals("POST") || method.equals("CONNECT")
+                ? method : "OTHER";
+        requests.computeIfAbsent(key, k -> new LongAdder()).increment();
+        requestDuration.record(nanos);
+    }
+
+    public static void cacheServed(long bytes) {
+        cacheServedBytes.add(bytes);
+    }
+
+    public static void upstreamConnected(long nanos) {
+        upstreamConnect.record(nanos);
+    }
+
+    public static void upstreamResponded(long nanos) {
+        upstreamResponse.record(nanos);
+    }
+
+    public static void upstreamFailed() {
+        upstreamErrors.increment();
+    }
+
+    public static int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public static String render() {
+        StringBuilder out = new StringBuilder(4096);
+        counter(out, "proxy_connections_accepted_total", "Client connections accepted.", accepted.sum());
+        counter(out, "proxy_connections_rejected_total", "Client connections rejected by the handler executor.",
+                rejected.sum());
+        gauge(out, "proxy_connections_active", "Client connections currently being handled.", activeConnections.get());
+
+        out.append("# HELP proxy_requests_total Requests handled, by method.\n# TYPE proxy_requests_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(requests).entrySet()) {
+            out.append("proxy_requests_total{method=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+        summary(out, "proxy_request_duration_seconds", "Time from parsing a request to finishing its response.",
+                requestDuration);
+
+        counter(out, "proxy_cache_hits_total", "Cache lookups served from memory or disk.", CacheManager.getHits());
+        counter(out, "proxy_cache_misses_total", "Cache lookups that went upstream.", CacheManager.getMisses());
+        counter(out, "proxy_cache_disk_hits_total", "Cache lookups served from the disk tier.", CacheManager.getDiskHits());
+        counter(out, "proxy_cache_evictions_total", "Entries evicted from the memory tier.", CacheManager.getEvictions());
+        counter(out, "proxy_cache_served_bytes_total", "Response bytes served from the cache.", cacheServedBytes.sum());
+        gauge(out, "proxy_cache_bytes", "Bytes held by the memory tier.", CacheManager.getCurrentBytes());
+        gauge(out, "proxy_cache_entries", "Entries held by the memory tier.", CacheManager.getEntryCount());
+
+        counter(out, "proxy_upstream_acquires_total", "Upstream connections leased from the pool.",
+                UpstreamPool.getAcquires());
+        counter(out, "proxy_upstream_reused_total", "Upstream leases satisfied by an idle connection.",
+                UpstreamPool.getReused());
+        counter(out, "proxy_upstream_opened_total", "Upstream connections opened.", UpstreamPool.getOpened());
+        counter(out, "proxy_upstream_errors_total", "Requests that failed while talking to the origin.",
+                upstreamErrors.sum());
+        int leased = 0;
+        int idle = 0;
+        for (int[] occupancy : UpstreamPool.getOccupancy().values()) {
+            leased += occupancy[0];
+            idle += occupancy[1];
+        }
+        out.append("# HELP proxy_upstream_connections Pooled upstream connections, by state.\n")
+                .append("# TYPE proxy_upstream_connections gauge\n")
+                .append("proxy_upstream_connections{state=\"leased\"} ").append(leased).append('\n')
+                .append("proxy_upstream_connections{state=\"idle\"} ").append(idle).append('\n');
+        summary(out, "proxy_upstream_connect_seconds", "Time to open a TCP connection to the origin.", upstreamConnect);
+        summary(out, "proxy_upstream_response_seconds", "Time from sending a request upstream to relaying the last byte.",
+                upstreamResponse);
+
+        gauge(out, "proxy_coalescing_in_flight", "Origin fetches currently shared by coalesced requests.",
+                RequestCoalescer.getInFlight());
+        counter(out, "proxy_tunnels_opened_total", "CONNECT tunnels established.", TunnelRelay.getOpened());
+        gauge(out, "proxy_tunnels_active", "CONNECT tunnels currently open.", TunnelRelay.getActive());
+        counter(out, "proxy_tunnel_bytes_up_total", "Bytes relayed from clients to origins through tunnels.",
+                TunnelRelay.getBytesUp());
+        counter(out, "proxy_tunnel_bytes_down_total", "Bytes relayed from origins to clients through tunnels.",
+                TunnelRelay.getBytesDown());
+        counter(out, "proxy_log_dropped_total", "Log entries dropped because the log buffer was full.",
+                Logger.getDropped());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" gauge\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" summary\n");
+        long[] values = histogram.quantiles(quantiles);
+        for (int i = 0; i < quantiles.length; i++) {
+            out.append(name).append("{quantile=\"").append(quantiles[i]).append("\"} ")
+                    .append(seconds(values[i])).append('\n');
+        }
+        out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n')
+                .append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -1,11 +1,16 @@
 package org.example.proxy;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+
+import org.example.common.ConnectionExecutor;
 
 public class ProxyServer {
     private static final int defaultPort = 8888;
+    private static final int adminPort = Integer.getInteger("proxy.adminPort", 8889);
 
     public static void main(String[] args) {
         int port = defaultPort;
@@ -18,17 +23,52 @@ public class ProxyServer {
             }
         }
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        ConnectionExecutor executor = ConnectionExecutor.fromSystemProperties("proxy");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Cache: " + CacheManager.getStats());
+            System.out.println("Upstream: " + UpstreamPool.getStats());
+            System.out.println("Coalescing: " + RequestCoalescer.getStats());
+            System.out.println("Tunnels: " + TunnelRelay.getStats());
+            System.out.println("Log: " + Logger.getStats());
+            CacheManager.flush();
+            Logger.flush();
+        }));
+
+        // accepting through a channel gives client sockets a SocketChannel for zero-copy disk cache hits
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
             System.out.println("Proxy server is running on http://localhost:" + port);
+            System.out.println("Handler executor: " + executor.describe());
+            System.out.println("Cache: " + CacheManager.getStats());
+            if (adminPort >= 0) {
+                AdminServer.start(adminPort);
+                System.out.println("Metrics: http://localhost:" + adminPort + "/metrics");
+            }
 
             while (true) {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("Client connected: " + clientSocket.getInetAddress());
+                Socket clientSocket = serverChannel.accept().socket();
+                ProxyMetrics.connectionAccepted();
 
-                new Thread(new ClientHandler(clientSocket)).start();
+                if (!executor.submit(new ClientHandler(clientSocket))) {
+                    ProxyMetrics.connectionRejected();
+                    rejectConnection(clientSocket);
+                }
             }
         } catch (IOException e) {
             System.err.println("Error starting proxy server: " + e.getMessage());
         }
     }
+
+    private static void rejectConnection(Socket clientSocket) {
+        try (clientSocket; PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)) {
+            writer.println("HTTP/1.1 503 Service Unavailable");
+            writer.println("Content-Type: text/plain");
+            writer.println("Retry-After: 1");
+            writer.println("Connection: close");
+            writer.println();
+            writer.println("Service Unavailable");
+        } catch (IOException e) {
+            System.err.println("Error rejecting connection: " + e.getMessage());
+        }
+    }
 }
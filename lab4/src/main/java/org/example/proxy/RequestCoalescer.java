@@ -0,0 +1,110 @@
+package org.example.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class RequestCoalescer {
+    private static final long timeout = Long.getLong("proxy.coalesceTimeout", 10000);
+
+    private static final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private static final AtomicLong leaders = new AtomicLong();
+    private static final AtomicLong followers = new AtomicLong();
+    private static final AtomicLong shared = new AtomicLong();
+    private static final AtomicLong fallbacks = new AtomicLong();
+    private static final AtomicLong varyMismatches = new AtomicLong();
+
+    public static Flight lead(String key) {
+        Flight flight = new Flight(key);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return null;
+        }
+        leaders.incrementAndGet();
+        return flight;
+    }
+
+    // a follower only reuses the leader's bytes if its own request selects the same variant under the response's Vary
+    public static byte[] await(String key, Function<String, String> requestHeaders) {
+        Flight flight = flights.get(key);
+        if (flight == null) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        followers.incrementAndGet();
+
+        try {
+            Shared result = flight.result.get(timeout, TimeUnit.MILLISECONDS);
+            if (result != null) {
+                if (result.matches(requestHeaders)) {
+                    shared.incrementAndGet();
+                    return result.response;
+                }
+                varyMismatches.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // fall back to an independent fetch
+        }
+        fallbacks.incrementAndGet();
+        return null;
+    }
+
+    public static void complete(Flight flight, byte[] response, Function<String, String> requestHeaders) {
+        flights.remove(flight.key, flight);
+        flight.result.complete(share(response, requestHeaders));
+    }
+
+    private static Shared share(byte[] response, Function<String, String> requestHeaders) {
+        if (response == null) {
+            return null;
+        }
+        ResponseHead head = ResponseHead.parse(response, response.length);
+        String[] vary = head == null ? null : CacheManager.varyNames(head.header("Vary"));
+        if (vary == null) {
+            // unparseable or Vary: *, nobody else's request can be shown to match
+            return null;
+        }
+        Map<String, String> selected = new HashMap<>();
+        for (String name : vary) {
+            selected.put(name, CacheManager.varyValue(requestHeaders, name));
+        }
+        return new Shared(response, selected);
+    }
+
+    public static int getInFlight() {
+        return flights.size();
+    }
+
+    public static String getStats() {
+        return "leaders=" + leaders.get() + " followers=" + followers.get() + " shared=" + shared.get()
+                + " fallbacks=" + fallbacks.get() + " varyMismatches=" + varyMismatches.get() + " inFlight=" + getInFlight();
+    }
+
+    public static class Flight {
+        private final String key;
+        private final CompletableFuture<Shared> result = new CompletableFuture<>();
+
+        Flight(String key) {
+            this.key = key;
+        }
+    }
+
+    private record Shared(byte[] response, Map<String, String> selected) {
+        boolean matches(Function<String, String> requestHeaders) {
+            for (Map.Entry<String, String> header : selected.entrySet()) {
+                if (!CacheManager.varyValue(requestHeaders, header.getKey()).equals(header.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
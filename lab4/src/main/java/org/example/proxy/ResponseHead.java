@@ -0,0 +1,44 @@
+package org.example.proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+public record ResponseHead(int statusCode, Map<String, String> headers, int length) {
+
+    public static ResponseHead parse(byte[] data, int limit) {
+        int end = -1;
+        for (int i = 3; i < limit; i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                end = i + 1;
+                break;
+            }
+        }
+        if (end < 0) {
+            return null;
+        }
+
+        String[] lines = new String(data, 0, end - 4, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] statusParts = lines[0].split(" ", 3);
+        int statusCode;
+        try {
+            statusCode = statusParts.length > 1 ? Integer.parseInt(statusParts[1]) : 0;
+        } catch (NumberFormatException e) {
+            statusCode = 0;
+        }
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.merge(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim(),
+                        (first, second) -> first + ", " + second);
+            }
+        }
+        return new ResponseHead(statusCode, headers, end);
+    }
+
+    public String header(String name) {
+        return headers.get(name);
+    }
+}
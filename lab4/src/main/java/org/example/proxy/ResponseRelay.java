@@ -0,0 +1,168 @@
+package org.example.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public class ResponseRelay {
+    private static final int maxHeadBytes = 64 * 1024;
+    private static final int maxChunkLineBytes = 4096;
+
+    private final InputStream upstream;
+    private final OutputStream client;
+    private final CacheTee tee;
+    private final byte[] buffer;
+    private boolean started;
+
+    public ResponseRelay(InputStream upstream, OutputStream client, CacheTee tee, byte[] buffer) {
+        this.upstream = upstream;
+        this.client = client;
+        this.tee = tee;
+        this.buffer = buffer;
+    }
+
+    public boolean hasStarted() {
+        return started;
+    }
+
+    public boolean relay(boolean headRequest) throws IOException {
+        byte[] rawHead = readHead();
+        ResponseHead head = ResponseHead.parse(rawHead, rawHead.length);
+        while (head.statusCode() >= 100 && head.statusCode() < 200 && head.statusCode() != 101) {
+            rawHead = readHead();
+            head = ResponseHead.parse(rawHead, rawHead.length);
+        }
+
+        forward(rewriteHead(rawHead, head), 0, -1);
+
+        boolean keepAlive = isKeepAlive(rawHead, head);
+        String transferEncoding = head.header("Transfer-Encoding");
+        String contentLength = head.header("Content-Length");
+        if (headRequest || head.statusCode() == 204 || head.statusCode() == 304) {
+            return keepAlive;
+        }
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            relayChunked();
+            return keepAlive;
+        }
+        if (contentLength != null) {
+            try {
+                relayFixed(Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid upstream Content-Length: " + contentLength);
+            }
+            return keepAlive;
+        }
+
+        int bytesRead;
+        while ((bytesRead = upstream.read(buffer)) != -1) {
+            forward(buffer, 0, bytesRead);
+        }
+        return false;
+    }
+
+    private byte[] readHead() throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+        int window = 0;
+        while (window != 0x0d0a0d0a) {
+            int b = upstream.read();
+            if (b == -1) {
+                throw new EOFException("Upstream closed before sending a response head");
+            }
+            head.write(b);
+            if (head.size() > maxHeadBytes) {
+                throw new IOException("Upstream response head too large");
+            }
+            window = (window << 8) | b;
+        }
+        return head.toByteArray();
+    }
+
+    private byte[] rewriteHead(byte[] rawHead, ResponseHead head) {
+        String[] lines = new String(rawHead, 0, head.length() - 4, StandardCharsets.ISO_8859_1).split("\r\n");
+        StringBuilder rewritten = new StringBuilder(rawHead.length + 32).append(lines[0]).append("\r\n");
+        for (int i = 1; i < lines.length; i++) {
+            String name = lines[i].substring(0, Math.max(0, lines[i].indexOf(':'))).trim();
+            if (name.equalsIgnoreCase("Connection") || name.equalsIgnoreCase("Keep-Alive")
+                    || name.equalsIgnoreCase("Proxy-Connection")) {
+                continue;
+            }
+            rewritten.append(lines[i]).append("\r\n");
+        }
+        return rewritten.append("Connection: close\r\n\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private boolean isKeepAlive(byte[] rawHead, ResponseHead head) {
+        String connection = head.header("Connection");
+        String lowerCase = connection == null ? "" : connection.toLowerCase(Locale.ROOT);
+        boolean http11 = new String(rawHead, 0, Math.min(8, rawHead.length), StandardCharsets.ISO_8859_1)
+                .equals("HTTP/1.1");
+        return http11 ? !lowerCase.contains("close") : lowerCase.contains("keep-alive");
+    }
+
+    private void relayFixed(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int bytesRead = upstream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead == -1) {
+                throw new EOFException("Upstream closed with " + remaining + " body bytes outstanding");
+            }
+            forward(buffer, 0, bytesRead);
+            remaining -= bytesRead;
+        }
+    }
+
+    private void relayChunked() throws IOException {
+        while (true) {
+            String sizeLine = readLine();
+            int extension = sizeLine.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid upstream chunk size: " + sizeLine);
+            }
+            if (size == 0) {
+                String trailer;
+                do {
+                    trailer = readLine();
+                } while (!trailer.isEmpty());
+                return;
+            }
+            relayFixed(size);
+            if (!readLine().isEmpty()) {
+                throw new IOException("Missing CRLF after upstream chunk");
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = upstream.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Upstream closed inside chunked body");
+            }
+            if (line.length() >= maxChunkLineBytes) {
+                throw new IOException("Upstream chunk line too long");
+            }
+            line.append((char) b);
+        }
+        String text = line.toString();
+        forward((text + "\n").getBytes(StandardCharsets.ISO_8859_1), 0, -1);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private void forward(byte[] data, int offset, int length) throws IOException {
+        int count = length < 0 ? data.length : length;
+        started = true;
+        client.write(data, offset, count);
+        if (tee != null) {
+            tee.write(data, offset, count);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.example.proxy;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.example.common.BufferPool;
+
+public class TunnelRelay {
+    private static final int connectTimeout = Integer.getInteger("proxy.upstreamConnectTimeout", 5000);
+    private static final long idleTimeout = Long.getLong("proxy.tunnelIdleTimeout", 60000);
+    private static final BufferPool bufferPool = new BufferPool(
+            Integer.getInteger("proxy.tunnelBufferSize", 64 * 1024), 1024, true);
+    private static final byte[] established = "HTTP/1.1 200 Connection Established\r\n\r\n"
+            .getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final ConcurrentLinkedQueue<Tunnel> pending = new ConcurrentLinkedQueue<>();
+    private static final Selector selector;
+
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicInteger active = new AtomicInteger();
+    private static final AtomicLong idleClosed = new AtomicLong();
+    private static final AtomicLong bytesUp = new AtomicLong();
+    private static final AtomicLong bytesDown = new AtomicLong();
+
+    static {
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        Thread relay = new Thread(TunnelRelay::relayLoop, "tunnel-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    public static boolean open(Socket clientSocket, String target, ByteBuffer leftover) throws IOException {
+        SocketChannel client = clientSocket.getChannel();
+        String host = target;
+        int port = 443;
+        int colon = target.lastIndexOf(':');
+        if (colon > 0 && target.indexOf(']', colon) < 0) {
+            host = target.substring(0, colon);
+            try {
+                port = Integer.parseInt(target.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+        }
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        if (client == null || host.isEmpty() || port <= 0 || port > 65535) {
+            writeStatus(clientSocket, "400 Bad Request");
+            return false;
+        }
+
+        SocketChannel upstream;
+        try {
+            upstream = connect(host, port);
+        } catch (IOException e) {
+            Logger.log("Tunnel to " + target + " failed: " + e.getMessage());
+            writeStatus(clientSocket, "502 Bad Gateway");
+            return false;
+        }
+
+        try {
+            clientSocket.getOutputStream().write(established);
+        } catch (IOException e) {
+            upstream.close();
+            throw e;
+        }
+        Tunnel tunnel = new Tunnel(target, client, upstream);
+        tunnel.toUpstream.put(leftover);
+        client.configureBlocking(false);
+        upstream.configureBlocking(false);
+
+        opened.incrementAndGet();
+        active.incrementAndGet();
+        pending.add(tunnel);
+        selector.wakeup();
+        Logger.log("Tunnel opened to " + target);
+        return true;
+    }
+
+    public static long getOpened() {
+        return opened.get();
+    }
+
+    public static int getActive() {
+        return active.get();
+    }
+
+    public static long getBytesUp() {
+        return bytesUp.get();
+    }
+
+    public static long getBytesDown() {
+        return bytesDown.get();
+    }
+
+    public static String getStats() {
+        return "opened=" + opened.get() + " active=" + active.get() + " idleClosed=" + idleClosed.get()
+                + " bytesUp=" + bytesUp.get() + " bytesDown=" + bytesDown.get();
+    }
+
+    private static SocketChannel connect(String host, int port) throws IOException {
+        IOException failure = null;
+        for (InetAddress address : DnsCache.resolve(host)) {
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.socket().connect(new InetSocketAddress(address, port), connectTimeout);
+                channel.socket().setTcpNoDelay(true);
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                failure = e;
+            }
+        }
+        DnsCache.invalidate(host);
+        throw failure != null ? failure : new IOException("No addresses for " + host);
+    }
+
+    private static void writeStatus(Socket clientSocket, String status) throws IOException {
+        clientSocket.getOutputStream().write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void relayLoop() {
+        long lastIdleCheck = System.currentTimeMillis();
+        while (true) {
+            try {
+                selector.select(1000);
+                Tunnel tunnel;
+                while ((tunnel = pending.poll()) != null) {
+                    tunnel.register();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    tunnel = (Tunnel) key.attachment();
+                    try {
+                        tunnel.handle(key);
+                    } catch (IOException e) {
+                        tunnel.close("error: " + e.getMessage());
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= 1000) {
+                    lastIdleCheck = now;
+                    for (SelectionKey key : selector.keys()) {
+                        tunnel = (Tunnel) key.attachment();
+                        if (key.isValid() && now - tunnel.lastActive >= idleTimeout) {
+                            idleClosed.incrementAndGet();
+                            tunnel.close("idle");
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Tunnel relay error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Tunnel {
+        private final String target;
+        private final SocketChannel client;
+        private final SocketChannel upstream;
+        // both buffers stay in fill mode: bytes read from one side wait here until written to the other
+        private final ByteBuffer toUpstream = bufferPool.acquire();
+        private final ByteBuffer toClient = bufferPool.acquire();
+        private SelectionKey clientKey;
+        private SelectionKey upstreamKey;
+        private boolean clientEof;
+        private boolean upstreamEof;
+        private long up;
+        private long down;
+        private long lastActive = System.currentTimeMillis();
+        private boolean closed;
+
+        Tunnel(String target, SocketChannel client, SocketChannel upstream) {
+            this.target = target;
+            this.client = client;
+            this.upstream = upstream;
+        }
+
+        void register() {
+            try {
+                clientKey = client.register(selector, 0, this);
+                upstreamKey = upstream.register(selector, 0, this);
+                // bytes the client sent right after the CONNECT head are flushed before anything is read
+                flush(toUpstream, upstream, true);
+                if (!closed) {
+                    updateInterest();
+                }
+            } catch (IOException e) {
+                close("error: " + e.getMessage());
+            }
+        }
+
+        void handle(SelectionKey key) throws IOException {
+            if (!key.isValid()) {
+                return;
+            }
+            lastActive = System.currentTimeMillis();
+            boolean fromClient = key == clientKey;
+            if (key.isWritable()) {
+                flush(fromClient ? toClient : toUpstream, fromClient ? client : upstream, !fromClient);
+            }
+            if (key.isValid() && key.isReadable()) {
+                pump(fromClient);
+            }
+            if (!closed) {
+                updateInterest();
+            }
+        }
+
+        private void pump(boolean fromClient) throws IOException {
+            SocketChannel source = fromClient ? client : upstream;
+            SocketChannel sink = fromClient ? upstream : client;
+            ByteBuffer buffer = fromClient ? toUpstream : toClient;
+
+            int read = source.read(buffer);
+            if (read < 0) {
+                if (fromClient) {
+                    clientEof = true;
+                } else {
+                    upstreamEof = true;
+                }
+            }
+            flush(buffer, sink, fromClient);
+        }
+
+        private void flush(ByteBuffer buffer, SocketChannel sink, boolean towardsUpstream) throws IOException {
+            buffer.flip();
+            int written = buffer.hasRemaining() ? sink.write(buffer) : 0;
+            buffer.compact();
+            if (towardsUpstream) {
+                up += written;
+                bytesUp.addAndGet(written);
+            } else {
+                down += written;
+                bytesDown.addAndGet(written);
+            }
+
+            // half-close: once one side has finished and its bytes are delivered, pass the EOF along
+            boolean sourceEof = towardsUpstream ? clientEof : upstreamEof;
+            if (sourceEof && buffer.position() == 0 && sink.isOpen()) {
+                sink.shutdownOutput();
+            }
+            if (clientEof && upstreamEof && toUpstream.position() == 0 && toClient.position() == 0) {
+                close("done");
+            }
+        }
+
+        private void updateInterest() {
+            clientKey.interestOps((clientEof || !toUpstream.hasRemaining() ? 0 : SelectionKey.OP_READ)
+                    | (toClient.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            upstreamKey.interestOps((upstreamEof || !toClient.hasRemaining() ? 0 : SelectionKey.OP_READ)
+                    | (toUpstream.position() > 0 ? SelectionKey.OP_WRITE : 0));
+        }
+
+        void close(String reason) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                client.close();
+            } catch (IOException e) {
+                System.err.println("Error closing tunnel client: " + e.getMessage());
+            }
+            try {
+                upstream.close();
+            } catch (IOException e) {
+                System.err.println("Error closing tunnel upstream: " + e.getMessage());
+            }
+            bufferPool.release(toUpstream);
+            bufferPool.release(toClient);
+            active.decrementAndGet();
+            Logger.log("Tunnel to " + target + " closed (" + reason + "): up=" + up + " down=" + down);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+public class UpstreamConnection {
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+    private final UpstreamPool.HostPool pool;
+    private long lastUsed = System.currentTimeMillis();
+    private int requests;
+
+    UpstreamConnection(Socket socket, UpstreamPool.HostPool pool) throws IOException {
+        this.socket = socket;
+        this.input = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        this.output = new BufferedOutputStream(socket.getOutputStream(), 8 * 1024);
+        this.pool = pool;
+    }
+
+    public InputStream getInput() {
+        return input;
+    }
+
+    public OutputStream getOutput() {
+        return output;
+    }
+
+    public boolean isReused() {
+        return requests > 0;
+    }
+
+    UpstreamPool.HostPool getPool() {
+        return pool;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    int getRequests() {
+        return requests;
+    }
+
+    void markUsed() {
+        requests++;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    boolean isHealthy(long idleTimeout) {
+        if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()
+                || System.currentTimeMillis() - lastUsed >= idleTimeout) {
+            return false;
+        }
+        try {
+            // an idle HTTP/1.1 connection must not have unread bytes; anything here is a stray response
+            return input.available() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing upstream connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.proxy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UpstreamPool {
+    private static final int maxPerHost = Integer.getInteger("proxy.upstreamMaxPerHost", 8);
+    private static final long idleTimeout = Long.getLong("proxy.upstreamIdleTimeout", 30000);
+    private static final int maxRequestsPerConnection = Integer.getInteger("proxy.upstreamMaxRequests", 1000);
+    private static final int connectTimeout = Integer.getInteger("proxy.upstreamConnectTimeout", 5000);
+    private static final int readTimeout = Integer.getInteger("proxy.upstreamReadTimeout", 30000);
+    private static final long acquireTimeout = Long.getLong("proxy.upstreamAcquireTimeout", 10000);
+
+    private static final ConcurrentHashMap<String, HostPool> pools = new ConcurrentHashMap<>();
+
+    private static final AtomicLong acquires = new AtomicLong();
+    private static final AtomicLong reused = new AtomicLong();
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicLong staleDiscarded = new AtomicLong();
+    private static final AtomicLong idleEvicted = new AtomicLong();
+
+    static {
+        Thread evictor = new Thread(UpstreamPool::evictIdleLoop, "upstream-pool-evictor");
+        evictor.setDaemon(true);
+        evictor.start();
+    }
+
+    public static UpstreamConnection acquire(String host, int port) throws IOException {
+        HostPool pool = pools.computeIfAbsent(host + ":" + port, key -> new HostPool(host, port));
+        try {
+            if (!pool.permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Upstream connection pool exhausted for " + host + ":" + port);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upstream connection");
+        }
+        acquires.incrementAndGet();
+
+        UpstreamConnection connection;
+        while ((connection = pool.pollIdle()) != null) {
+            if (connection.isHealthy(idleTimeout)) {
+                reused.incrementAndGet();
+                pool.leased.incrementAndGet();
+                return connection;
+            }
+            staleDiscarded.incrementAndGet();
+            connection.close();
+        }
+
+        try {
+            connection = open(pool);
+        } catch (IOException e) {
+            pool.permits.release();
+            throw e;
+        }
+        opened.incrementAndGet();
+        pool.leased.incrementAndGet();
+        return connection;
+    }
+
+    public static void release(UpstreamConnection connection, boolean reusable) {
+        HostPool pool = connection.getPool();
+        pool.leased.decrementAndGet();
+        connection.markUsed();
+        if (reusable && connection.getRequests() < maxRequestsPerConnection) {
+            pool.offerIdle(connection);
+        } else {
+            connection.close();
+        }
+        pool.permits.release();
+    }
+
+    public static long getAcquires() {
+        return acquires.get();
+    }
+
+    public static long getReused() {
+        return reused.get();
+    }
+
+    public static long getOpened() {
+        return opened.get();
+    }
+
+    public static double getReuseRatio() {
+        long total = getAcquires();
+        return total == 0 ? 0 : (double) getReused() / total;
+    }
+
+    public static Map<String, int[]> getOccupancy() {
+        Map<String, int[]> occupancy = new TreeMap<>();
+        for (Map.Entry<String, HostPool> entry : pools.entrySet()) {
+            HostPool pool = entry.getValue();
+            occupancy.put(entry.getKey(), new int[]{pool.leased.get(), pool.idleCount()});
+        }
+        return occupancy;
+    }
+
+    public static String getStats() {
+        StringBuilder stats = new StringBuilder()
+                .append("acquires=").append(getAcquires())
+                .append(" reused=").append(getReused())
+                .append(" opened=").append(getOpened())
+                .append(" reuseRatio=").append(String.format(Locale.ROOT, "%.3f", getReuseRatio()))
+                .append(" stale=").append(staleDiscarded.get())
+                .append(" idleEvicted=").append(idleEvicted.get())
+                .append(" dnsHits=").append(DnsCache.getHits())
+                .append(" dnsMisses=").append(DnsCache.getMisses());
+        for (Map.Entry<String, int[]> host : getOccupancy().entrySet()) {
+            stats.append(" ").append(host.getKey()).append("=").append(host.getValue()[0]).append("/")
+                    .append(host.getValue()[1]).append("/").append(maxPerHost);
+        }
+        return stats.toString();
+    }
+
+    private static UpstreamConnection open(HostPool pool) throws IOException {
+        InetAddress[] addresses = DnsCache.resolve(pool.host);
+        IOException failure = null;
+        for (InetAddress address : addresses) {
+            Socket socket = new Socket();
+            try {
+                long start = System.nanoTime();
+                socket.connect(new InetSocketAddress(address, pool.port), connectTimeout);
+                ProxyMetrics.upstreamConnected(System.nanoTime() - start);
+                socket.setSoTimeout(readTimeout);
+                socket.setTcpNoDelay(true);
+                return new UpstreamConnection(socket, pool);
+            } catch (IOException e) {
+                socket.close();
+                failure = e;
+            }
+        }
+        DnsCache.invalidate(pool.host);
+        throw failure != null ? failure : new IOException("No addresses for " + pool.host);
+    }
+
+    private static void evictIdleLoop() {
+        while (true) {
+            try {
+                Thread.sleep(Math.max(1000, idleTimeout / 2));
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (HostPool pool : pools.values()) {
+                idleEvicted.addAndGet(pool.evictIdle());
+            }
+        }
+    }
+
+    static class HostPool {
+        private final String host;
+        private final int port;
+        private final Semaphore permits = new Semaphore(maxPerHost);
+        private final AtomicInteger leased = new AtomicInteger();
+        private final Deque<UpstreamConnection> idle = new ArrayDeque<>();
+
+        HostPool(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        synchronized UpstreamConnection pollIdle() {
+            return idle.pollFirst();
+        }
+
+        synchronized void offerIdle(UpstreamConnection connection) {
+            idle.offerFirst(connection);
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+
+        synchronized int evictIdle() {
+            int evicted = 0;
+            long now = System.currentTimeMillis();
+            Iterator<UpstreamConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                UpstreamConnection connection = iterator.next();
+                if (now - connection.getLastUsed() >= idleTimeout || !connection.isHealthy(idleTimeout)) {
+                    iterator.remove();
+                    connection.close();
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+    }
+}
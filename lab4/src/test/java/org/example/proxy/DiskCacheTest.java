@@ -0,0 +1,159 @@
+package org.example.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskCacheTest {
+    private static final long maxBytes = 64L * 1024 * 1024;
+    private static final long segmentBytes = 1024 * 1024;
+    private static final int slots = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void churnLeavesNoTombstonesAndKeepsEveryLiveEntry() throws IOException {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        DiskCache cache = new DiskCache(directory, maxBytes, segmentBytes, slots);
+        try {
+            for (int i = 0; i < 500; i++) {
+                assertTrue(cache.put("live" + i, body("live" + i), expiresAt));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                cache.put("churn" + i, body("churn" + i), expiresAt);
+                cache.remove("churn" + i);
+            }
+
+            assertEquals(500, cache.getEntryCount());
+            for (int i = 0; i < 500; i++) {
+                assertArrayEquals(body("live" + i), read(cache, "live" + i));
+            }
+            assertNull(read(cache, "churn0"));
+            cache.flush();
+            assertEquals(0, countSlots(1));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void truncatedSegmentDropsEntriesPastItsEnd() throws IOException {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        DiskCache cache = new DiskCache(directory, maxBytes, segmentBytes, slots);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.put("page" + i, body("page" + i), expiresAt));
+        }
+        cache.close();
+
+        Path segment = directory.resolve("segment-00000001.dat");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        cache = new DiskCache(directory, maxBytes, segmentBytes, slots);
+        try {
+            int kept = cache.getEntryCount();
+            assertTrue(kept > 0 && kept < 100, "kept " + kept);
+            int readable = 0;
+            for (int i = 0; i < 100; i++) {
+                byte[] stored = read(cache, "page" + i);
+                if (stored != null) {
+                    assertArrayEquals(body("page" + i), stored);
+                    readable++;
+                }
+            }
+            assertEquals(kept, readable);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void fullIndexEvictsTheOldestSegmentInsteadOfRefusingPuts() throws IOException {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        DiskCache cache = new DiskCache(directory, maxBytes, 64 * 1024, slots);
+        try {
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(cache.put("page" + i, body("page" + i), expiresAt), "put " + i);
+            }
+
+            assertTrue(cache.getEntryCount() < slots / 4 * 3, "entries " + cache.getEntryCount());
+            assertNull(read(cache, "page0"));
+            for (int i = 4950; i < 5000; i++) {
+                assertArrayEquals(body("page" + i), read(cache, "page" + i));
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void evictedSegmentsLeaveNoReadableEntriesBehind() throws IOException {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        DiskCache cache = new DiskCache(directory, 256 * 1024, 64 * 1024, slots);
+        int kept;
+        try {
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(cache.put("page" + i, body("page" + i), expiresAt));
+            }
+
+            kept = cache.getEntryCount();
+            int readable = 0;
+            for (int i = 0; i < 2000; i++) {
+                byte[] stored = read(cache, "page" + i);
+                if (stored != null) {
+                    assertArrayEquals(body("page" + i), stored);
+                    readable++;
+                }
+            }
+            assertEquals(kept, readable);
+            assertTrue(cache.getBytes() <= 256 * 1024, "bytes " + cache.getBytes());
+        } finally {
+            cache.close();
+        }
+
+        cache = new DiskCache(directory, 256 * 1024, 64 * 1024, slots);
+        try {
+            assertEquals(kept, cache.getEntryCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static byte[] body(String key) {
+        return ("HTTP/1.1 200 OK\r\nContent-Length: 1000\r\n\r\n" + key.repeat(1000 / key.length() + 1))
+                .getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] read(DiskCache cache, String key) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        return cache.transferTo(key, Channels.newChannel(output)) < 0 ? null : output.toByteArray();
+    }
+
+    private int countSlots(long value) throws IOException {
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(directory.resolve("index.dat"), StandardOpenOption.READ)) {
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int position = 64; position < index.capacity(); position += 32) {
+                if (index.getLong(position) == value) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescingTest {
+    private static final long originDelayMillis = 500;
+
+    private final ConcurrentHashMap<String, AtomicInteger> originFetches = new ConcurrentHashMap<>();
+    private ServerSocket origin;
+    private ServerSocket proxy;
+
+    @BeforeEach
+    void start() throws IOException {
+        origin = new ServerSocket(0);
+        startDaemon(() -> {
+            while (!origin.isClosed()) {
+                try {
+                    Socket socket = origin.accept();
+                    startDaemon(() -> serveOrigin(socket));
+                } catch (IOException e) {
+                    // closed by stop()
+                }
+            }
+        });
+
+        proxy = ServerSocketChannel.open().bind(new InetSocketAddress(0)).socket();
+        startDaemon(() -> {
+            while (!proxy.isClosed()) {
+                try {
+                    startDaemon(new ClientHandler(proxy.accept()));
+                } catch (IOException e) {
+                    // closed by stop()
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        proxy.close();
+        origin.close();
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneOriginFetch() throws Exception {
+        int clients = 10;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                responses.add(executor.submit(() -> {
+                    go.await();
+                    return fetch("/shared", null);
+                }));
+            }
+            go.countDown();
+            for (Future<String> response : responses) {
+                assertTrue(response.get().endsWith("encoding=identity"), response.get());
+            }
+        }
+        assertEquals(1, originFetches.get("/shared").get());
+    }
+
+    @Test
+    void followerWithDifferentAcceptEncodingFetchesItsOwnVariant() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> gzip = executor.submit(() -> fetch("/variant", "gzip"));
+            // let the gzip request become the leader before the second client asks for the same URL
+            Thread.sleep(originDelayMillis / 5);
+            Future<String> identity = executor.submit(() -> fetch("/variant", null));
+
+            assertTrue(gzip.get().endsWith("encoding=gzip"), gzip.get());
+            assertTrue(identity.get().endsWith("encoding=identity"), identity.get());
+        }
+        assertEquals(2, originFetches.get("/variant").get());
+    }
+
+    private String fetch(String path, String acceptEncoding) throws IOException {
+        String request = "GET http://localhost:" + origin.getLocalPort() + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                + (acceptEncoding == null ? "" : "Accept-Encoding: " + acceptEncoding + "\r\n") + "\r\n";
+        try (Socket socket = new Socket("localhost", proxy.getLocalPort())) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private void serveOrigin(Socket socket) {
+        try (socket) {
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            String head;
+            while ((head = readHead(input)) != null) {
+                String path = head.substring(head.indexOf(' ') + 1, head.indexOf(' ', head.indexOf(' ') + 1));
+                String encoding = "identity";
+                for (String line : head.split("\r\n")) {
+                    if (line.toLowerCase(Locale.ROOT).startsWith("accept-encoding:")) {
+                        encoding = line.substring(line.indexOf(':') + 1).trim();
+                    }
+                }
+                originFetches.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+                Thread.sleep(originDelayMillis);
+
+                String body = "encoding=" + encoding;
+                output.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nCache-Control: max-age=60\r\n"
+                        + "Vary: Accept-Encoding\r\nContent-Length: " + body.length() + "\r\n\r\n" + body)
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                output.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // the proxy closed its upstream connection
+        }
+    }
+
+    private static String readHead(InputStream input) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int window = 0;
+        int b;
+        while ((b = input.read()) != -1) {
+            head.write(b);
+            window = (window << 8) | b;
+            if (window == 0x0d0a0d0a) {
+                return head.toString(StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    private static void startDaemon(Runnable task) {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}